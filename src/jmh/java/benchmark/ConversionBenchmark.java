@@ -0,0 +1,67 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import parser.GeodeticConverter;
+import parser.PacketParser;
+import parser.data.TrackColumns;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пересчёт координат трека в ECEF и ENU: через DTO на точку и пакетно по колонкам.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConversionBenchmark {
+
+    @Param({"3600", "86400"})
+    private int epochs;
+
+    private List<PacketParser.InertialDTO> inertialDTOS;
+    private TrackColumns track;
+    private double[] x;
+    private double[] y;
+    private double[] z;
+
+    @Setup
+    public void setUp() throws IOException {
+        File inertialFile = SyntheticData.inertialFile(epochs);
+        File nmeaFile = SyntheticData.nmeaFile(epochs);
+        inertialDTOS = PacketParser.parseInertialExplorerFile(inertialFile);
+        track = TrackColumns.of(PacketParser.parse(nmeaFile).stream());
+        x = new double[track.size()];
+        y = new double[track.size()];
+        z = new double[track.size()];
+        inertialFile.delete();
+        nmeaFile.delete();
+    }
+
+    @Benchmark
+    public void convertedDto(Blackhole blackhole) {
+        for (PacketParser.InertialDTO dto : inertialDTOS) {
+            blackhole.consume(PacketParser.getConvertedDTO(dto));
+        }
+    }
+
+    @Benchmark
+    public double[] ecefBatch() {
+        for (int i = 0; i < track.size(); i++) {
+            GeodeticConverter.toEcef(track.getLatitude(i), track.getLongitude(i), track.getAltitude(i), x, y, z, i);
+        }
+        return x;
+    }
+
+    @Benchmark
+    public double[] enuBatch() {
+        track.toEnu(track.getLatitude(0), track.getLongitude(0), track.getAltitude(0), x, y, z);
+        return x;
+    }
+}
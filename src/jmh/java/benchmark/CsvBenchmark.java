@@ -0,0 +1,96 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import parser.PacketParser;
+import parser.TrackMatcher;
+import parser.data.PositionWithTime;
+import parser.data.Record;
+import parser.data.TrackColumns;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Создание выходных CSV-файлов. Файлы позиций пишутся в {@link PacketParser#OUTPUT_PREFIX} рабочего каталога,
+ * остальные - во временный каталог.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CsvBenchmark {
+
+    private static final TrackMatcher LINEAR_MATCHER =
+            new TrackMatcher(Duration.ofMillis(50), TrackMatcher.Interpolation.LINEAR, Duration.ofSeconds(1));
+
+    @Param({"3600", "86400"})
+    private int epochs;
+
+    private List<Record> records;
+    private TrackColumns track;
+    private List<PositionWithTime> positions;
+    private List<PacketParser.InertialDTO> inertialDTOS;
+    private File dopFile;
+    private File deltaFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        File nmeaFile = SyntheticData.nmeaFile(epochs);
+        File inertialFile = SyntheticData.inertialFile(epochs);
+        records = PacketParser.parse(nmeaFile);
+        track = TrackColumns.of(records.stream());
+        positions = track.asPositionList();
+        inertialDTOS = PacketParser.parseInertialExplorerFile(inertialFile);
+        nmeaFile.delete();
+        inertialFile.delete();
+        new File(PacketParser.OUTPUT_PREFIX).mkdirs();
+        dopFile = File.createTempFile("dop", ".csv");
+        deltaFile = File.createTempFile("delta", ".csv");
+    }
+
+    @TearDown
+    public void tearDown() {
+        dopFile.delete();
+        deltaFile.delete();
+    }
+
+    @Benchmark
+    public File positionCsv() {
+        return PacketParser.createPositionCsv(records);
+    }
+
+    @Benchmark
+    public File positionCsvColumns() {
+        return PacketParser.createPositionCsv(track);
+    }
+
+    @Benchmark
+    public File actualPositionCsv() {
+        return PacketParser.createActualPositionCsv(inertialDTOS);
+    }
+
+    @Benchmark
+    public File dopCsv() {
+        return PacketParser.createDOPCsv(records, dopFile.getPath());
+    }
+
+    @Benchmark
+    public File dopCsvColumns() {
+        return PacketParser.createDOPCsv(track, dopFile.getPath());
+    }
+
+    @Benchmark
+    public File deltaFileExact() {
+        return PacketParser.createDeltaFile(deltaFile.getPath(), positions, inertialDTOS);
+    }
+
+    @Benchmark
+    public File deltaFileInterpolated() {
+        return PacketParser.createDeltaFile(deltaFile.getPath(), positions, inertialDTOS, LINEAR_MATCHER);
+    }
+}
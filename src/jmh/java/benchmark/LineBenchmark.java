@@ -0,0 +1,44 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import parser.PacketParser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор одной строки эталонного трека.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LineBenchmark {
+
+    private static final int LINE_COUNT = 1024;
+
+    private final String[] inertialLines = new String[LINE_COUNT];
+    private final String[] rtkPostLines = new String[LINE_COUNT];
+    private int index;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < LINE_COUNT; i++) {
+            inertialLines[i] = SyntheticData.inertialLine(i);
+            rtkPostLines[i] = SyntheticData.rtkPostLine(i);
+        }
+    }
+
+    @Benchmark
+    public PacketParser.InertialDTO parseInertialLine() {
+        index = (index + 1) & (LINE_COUNT - 1);
+        return PacketParser.parseInertialLine(inertialLines[index]);
+    }
+
+    @Benchmark
+    public PacketParser.RTKPostDTO parseRTKPostLine() {
+        index = (index + 1) & (LINE_COUNT - 1);
+        return PacketParser.parseRTKPostLine(rtkPostLines[index]);
+    }
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import parser.PacketParser;
+import parser.ParallelPacketParser;
+import parser.data.Record;
+import parser.data.TrackColumns;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение файлов целиком: разбор NMEA в записи, извлечение значений и чтение эталонных треков.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"3600", "86400"})
+    private int epochs;
+
+    private File nmeaFile;
+    private File inertialFile;
+    private File rtkPostFile;
+    private List<Record> records;
+
+    @Setup
+    public void setUp() throws IOException {
+        nmeaFile = SyntheticData.nmeaFile(epochs);
+        inertialFile = SyntheticData.inertialFile(epochs);
+        rtkPostFile = SyntheticData.rtkPostFile(epochs);
+        records = PacketParser.parse(nmeaFile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        nmeaFile.delete();
+        inertialFile.delete();
+        rtkPostFile.delete();
+    }
+
+    @Benchmark
+    public List<Record> parse() throws IOException {
+        return PacketParser.parse(nmeaFile);
+    }
+
+    @Benchmark
+    public List<Record> parseParallel() throws IOException {
+        return ParallelPacketParser.parse(nmeaFile);
+    }
+
+    @Benchmark
+    public List<Record> parseLazy() throws IOException {
+        return ParallelPacketParser.parseLazy(nmeaFile, ForkJoinPool.commonPool(), (records, bytesRead, totalBytes) -> { });
+    }
+
+    @Benchmark
+    public List<PacketParser.InfoDTO> dopDtoList() {
+        return PacketParser.getDopDTOList(records);
+    }
+
+    @Benchmark
+    public TrackColumns trackColumns() {
+        return TrackColumns.of(records.stream());
+    }
+
+    @Benchmark
+    public List<PacketParser.InertialDTO> parseInertialExplorerFile() {
+        return PacketParser.parseInertialExplorerFile(inertialFile);
+    }
+
+    @Benchmark
+    public List<PacketParser.RTKPostDTO> parseRTKPostFile() {
+        return PacketParser.parseRTKPostFile(rtkPostFile);
+    }
+}
@@ -0,0 +1,123 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Генераторы синтетических файлов NMEA, Inertial Explorer и RTKPOST для бенчмарков.
+ * Эпохи идут с шагом в одну секунду начиная с полуночи, поэтому 86400 эпох соответствуют суткам записи.
+ * Координаты всех трёх форматов совпадают, чтобы треки сопоставлялись при расчёте разностей.
+ */
+final class SyntheticData {
+
+    private static final double START_LATITUDE = 52.2755;
+    private static final double START_LONGITUDE = 104.2804;
+    private static final double STEP = 0.000001;
+
+    private SyntheticData() {
+    }
+
+    static File nmeaFile(int epochs) throws IOException {
+        File file = File.createTempFile("nmea", ".txt");
+        file.deleteOnExit();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < epochs; i++) {
+                writeEpoch(writer, i);
+            }
+        }
+        return file;
+    }
+
+    static File inertialFile(int epochs) throws IOException {
+        File file = File.createTempFile("inertial", ".txt");
+        file.deleteOnExit();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < epochs; i++) {
+                writer.write(inertialLine(i));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    static File rtkPostFile(int epochs) throws IOException {
+        File file = File.createTempFile("rtkpost", ".pos");
+        file.deleteOnExit();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("% program   : RTKPOST");
+            writer.newLine();
+            for (int i = 0; i < epochs; i++) {
+                writer.write(rtkPostLine(i));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    static String inertialLine(int epoch) {
+        return String.format(Locale.ENGLISH, "%s %.8f %.8f %.3f 0.01 0.02 1",
+                time(epoch), latitude(epoch), longitude(epoch), altitude(epoch));
+    }
+
+    static String rtkPostLine(int epoch) {
+        return String.format(Locale.ENGLISH, "2021/04/12 %s %14.9f %14.9f %10.4f   1  19   0.0051   0.0048   0.0113  -0.0012   0.0021  -0.0034   0.00    0.0"
+                        + "   0.0000   0.0000   0.0000   0.0000   0.0000   0.0000   0.0000   0.0000",
+                time(epoch), latitude(epoch), longitude(epoch), altitude(epoch));
+    }
+
+    private static void writeEpoch(BufferedWriter writer, int epoch) throws IOException {
+        String time = nmeaTime(epoch);
+        String latitude = nmeaCoordinate(latitude(epoch), 2);
+        String longitude = nmeaCoordinate(longitude(epoch), 3);
+        String altitude = String.format(Locale.ENGLISH, "%.1f", altitude(epoch));
+        writeSentence(writer, "GNRMC," + time + ",A," + latitude + ",N," + longitude + ",E,00.004,194.3,120421,,,A");
+        writeSentence(writer, "GNGGA," + time + "," + latitude + ",N," + longitude + ",E,1,19,0.5," + altitude + ",M,,M,,");
+        writeSentence(writer, "GNGSA,M,3,04,05,07,08,09,16,18,26,27,30,,,1.0,0.5,0.8");
+        writeSentence(writer, "GNGSA,M,3,67,68,69,76,77,78,86,87,88,,,,1.0,0.5,0.8");
+        writeSentence(writer, "GNVTG,194.3,T,,M,00.004,N,00.008,K,A");
+        writeSentence(writer, "GNZDA," + time + ",12,04,2021,00,00");
+        writeSentence(writer, "GNGLL," + latitude + ",N," + longitude + ",E," + time + ",A,A");
+    }
+
+    private static void writeSentence(BufferedWriter writer, String body) throws IOException {
+        int checksum = 0;
+        for (int i = 0; i < body.length(); i++) {
+            checksum ^= body.charAt(i);
+        }
+        writer.write('$');
+        writer.write(body);
+        writer.write(String.format("*%02X", checksum));
+        writer.newLine();
+    }
+
+    private static double latitude(int epoch) {
+        return START_LATITUDE + (epoch % 1000) * STEP;
+    }
+
+    private static double longitude(int epoch) {
+        return START_LONGITUDE + (epoch % 700) * STEP;
+    }
+
+    private static double altitude(int epoch) {
+        return 400 + (epoch % 10) * 0.1;
+    }
+
+    private static String time(int epoch) {
+        int second = epoch % 86400;
+        return String.format("%02d:%02d:%02d.000", second / 3600, second / 60 % 60, second % 60);
+    }
+
+    private static String nmeaTime(int epoch) {
+        int second = epoch % 86400;
+        return String.format("%02d%02d%02d.00", second / 3600, second / 60 % 60, second % 60);
+    }
+
+    private static String nmeaCoordinate(double degrees, int degreeDigits) {
+        int whole = (int) degrees;
+        double minutes = (degrees - whole) * 60;
+        return String.format(Locale.ENGLISH, "%0" + degreeDigits + "d%07.4f", whole, minutes);
+    }
+}
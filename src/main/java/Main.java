@@ -3,13 +3,8 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
-import parser.PacketParser;
-import parser.data.Record;
 
-import java.io.File;
-import java.io.IOException;
 import java.net.URL;
-import java.util.List;
 
 public class Main extends Application {
 
@@ -30,24 +25,10 @@ public class Main extends Application {
     }
 
 
-    public static void main(String[] args) {
-        launch(args);
-//        parseConsole();
-    }
-
     /**
-     * Use only for debug!!!
+     * Запуск интерфейса; пакетная обработка файлов без JavaFX запускается классом {@link parser.BatchParser}.
      */
-    private static void parseConsole() {
-        File testText = new File("test_all_nmea.txt");
-        List<Record> records = null;
-        try {
-            records = PacketParser.parse(testText);
-            PacketParser.createDOPCsv(records);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        boolean b = true;
-        PacketParser.createPositionCsv(records);
+    public static void main(String[] args) {
+        launch(args);
     }
 }
@@ -0,0 +1,198 @@
+package controller;
+
+import javafx.concurrent.Worker;
+import javafx.scene.web.WebEngine;
+import netscape.javascript.JSObject;
+import org.jetbrains.annotations.Nullable;
+import parser.PacketParser.ConvertedDTO;
+import parser.data.ChartSeries;
+import parser.data.SpatialIndex;
+import parser.data.TrackColumns;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Источник точек для страниц графиков (charts.js), доступный в них как window.javaCharts.
+ * Страница запрашивает точки видимого интервала для ширины графика в пикселях и получает не больше двух точек на пиксель,
+ * прореженных {@link ChartSeries#select(long, long, int)}; при масштабировании точки запрашиваются заново.
+ * Страница координат (positions.js) так же запрашивает точки трека видимой области из {@link SpatialIndex}.
+ * Методы, вызываемые из JavaScript, должны быть открытыми.
+ */
+public class ChartBridge {
+
+    static final String HDOP = "hdop";
+    static final String VDOP = "vdop";
+    static final String PDOP = "pdop";
+    static final String SATELLITES = "sat";
+    static final String DELTA_LATITUDE = "lat";
+    static final String DELTA_LONGITUDE = "lon";
+    static final String DELTA_LATITUDE_METERS = "lat_m";
+    static final String DELTA_LONGITUDE_METERS = "lon_m";
+    static final String DELTA_SATELLITES = "delta_sat";
+
+    private static final String MEMBER = "javaCharts";
+    private static final String SHOW_SCRIPT = "if (typeof showJavaCharts === 'function') showJavaCharts();"
+            + "if (typeof showJavaPositions === 'function') showJavaPositions()";
+    private static final int MAX_WIDTH = 8192;
+    private static final int MAX_POSITIONS = 100_000;
+
+    private final List<WebEngine> engines = new ArrayList<>();
+    /**
+     * Время на графиках CanvasJS показывается в часовом поясе страницы, сдвиг оставляет на оси время UTC, как в файле разностей.
+     */
+    private final long offsetMillis = OffsetDateTime.now().getOffset().getTotalSeconds() * 1000L;
+    private volatile Map<String, ChartSeries> series = Collections.emptyMap();
+    @Nullable
+    private volatile SpatialIndex positions;
+
+    /**
+     * Делает объект доступным странице после каждой её загрузки. Вызывается в потоке JavaFX.
+     */
+    void attach(WebEngine engine) {
+        engines.add(engine);
+        engine.getLoadWorker().stateProperty().addListener((observable, oldState, newState) -> {
+            if (newState == Worker.State.SUCCEEDED) {
+                JSObject window = (JSObject) engine.executeScript("window");
+                window.setMember(MEMBER, this);
+                engine.executeScript(SHOW_SCRIPT);
+            }
+        });
+    }
+
+    /**
+     * Заменяет ряды и точки трека и перерисовывает графики страниц. Вызывается в потоке JavaFX.
+     *
+     * @param positions индекс координат трека или null
+     */
+    void show(Map<String, ChartSeries> series, @Nullable SpatialIndex positions) {
+        this.series = series;
+        this.positions = positions;
+        for (WebEngine engine : engines) {
+            engine.executeScript(SHOW_SCRIPT);
+        }
+    }
+
+    void clear() {
+        series = Collections.emptyMap();
+        positions = null;
+    }
+
+    public boolean has(String name) {
+        ChartSeries chart = series.get(name);
+        return chart != null && chart.size() > 0;
+    }
+
+    /**
+     * @param from  начало видимого интервала (время графика) или NaN для всего ряда
+     * @param to    конец видимого интервала или NaN
+     * @param width ширина графика в пикселях
+     * @return JSON-массив точек [[x, y], ...]
+     */
+    public String points(String name, double from, double to, int width) {
+        ChartSeries chart = series.get(name);
+        if (chart == null || chart.size() == 0) {
+            return "[]";
+        }
+        long start = Double.isNaN(from) || Double.isInfinite(from) ? Long.MIN_VALUE : (long) Math.floor(from) + offsetMillis;
+        long end = Double.isNaN(to) || Double.isInfinite(to) ? Long.MAX_VALUE : (long) Math.ceil(to) + offsetMillis;
+        int[] indexes = chart.select(start, end, Math.max(1, Math.min(width, MAX_WIDTH)));
+        StringBuilder json = new StringBuilder(indexes.length * 24 + 2).append('[');
+        for (int i : indexes) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('[').append(chart.getX(i) - offsetMillis).append(',').append(chart.getY(i)).append(']');
+        }
+        return json.append(']').toString();
+    }
+
+    public boolean hasPositions() {
+        SpatialIndex index = positions;
+        return index != null && index.size() > 0;
+    }
+
+    /**
+     * Точки трека в видимой области карты; границы NaN означают неограниченную область.
+     *
+     * @param limit наибольшее количество точек, лишние отбрасываются равномерно по области ({@link SpatialIndex#sample})
+     * @return JSON-массив точек [[широта, долгота], ...]
+     */
+    public String positions(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, int limit) {
+        SpatialIndex index = positions;
+        if (index == null) {
+            return "[]";
+        }
+        int[] epochs = index.sample(lower(minLatitude), lower(minLongitude), upper(maxLatitude), upper(maxLongitude),
+                Math.max(1, Math.min(limit, MAX_POSITIONS)));
+        TrackColumns track = index.getTrack();
+        StringBuilder json = new StringBuilder(epochs.length * 40 + 2).append('[');
+        for (int i : epochs) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('[').append(track.getLatitude(i)).append(',').append(track.getLongitude(i)).append(']');
+        }
+        return json.append(']').toString();
+    }
+
+    private static double lower(double bound) {
+        return Double.isNaN(bound) ? Double.NEGATIVE_INFINITY : bound;
+    }
+
+    private static double upper(double bound) {
+        return Double.isNaN(bound) ? Double.POSITIVE_INFINITY : bound;
+    }
+
+    /**
+     * Ряды DOP и количества спутников трека.
+     */
+    static Map<String, ChartSeries> trackSeries(TrackColumns track) {
+        Map<String, ChartSeries> result = new HashMap<>();
+        result.put(HDOP, ChartSeries.of(track, TrackColumns::getHDOP));
+        result.put(VDOP, ChartSeries.of(track, TrackColumns::getVDOP));
+        result.put(PDOP, ChartSeries.of(track, TrackColumns::getPDOP));
+        result.put(SATELLITES, ChartSeries.of(track, (columns, i) -> satellites(columns.getSatelliteCount(i))));
+        return result;
+    }
+
+    private static double satellites(int count) {
+        return count < 0 ? Double.NaN : count;
+    }
+
+    /**
+     * Сбор рядов разностей с эталонным треком по мере записи файла разностей, см.
+     * {@link parser.PacketParser#createDeltaFile(String, List, List, parser.TrackMatcher, Consumer)}.
+     */
+    static class DeltaSeries implements Consumer<ConvertedDTO> {
+        private final ChartSeries.Builder latitude = new ChartSeries.Builder();
+        private final ChartSeries.Builder longitude = new ChartSeries.Builder();
+        private final ChartSeries.Builder latitudeMeters = new ChartSeries.Builder();
+        private final ChartSeries.Builder longitudeMeters = new ChartSeries.Builder();
+        private final ChartSeries.Builder satellites = new ChartSeries.Builder();
+
+        @Override
+        public void accept(ConvertedDTO delta) {
+            long time = delta.getDateTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+            latitude.add(time, delta.getLatitudeD());
+            longitude.add(time, delta.getLongitudeD());
+            latitudeMeters.add(time, delta.getLatitudeM());
+            longitudeMeters.add(time, delta.getLongitudeM());
+            satellites.add(time, satellites(delta.getSatelliteCount()));
+        }
+
+        void putTo(Map<String, ChartSeries> result) {
+            result.put(DELTA_LATITUDE, latitude.build());
+            result.put(DELTA_LONGITUDE, longitude.build());
+            result.put(DELTA_LATITUDE_METERS, latitudeMeters.build());
+            result.put(DELTA_LONGITUDE_METERS, longitudeMeters.build());
+            result.put(DELTA_SATELLITES, satellites.build());
+        }
+    }
+}
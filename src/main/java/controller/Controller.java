@@ -1,32 +1,45 @@
 package controller;
 
+import javafx.animation.AnimationTimer;
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
+import javafx.scene.control.Button;
 import javafx.scene.control.DatePicker;
+import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
+import javafx.scene.control.Tooltip;
 import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
 import javafx.stage.FileChooser;
 import net.sf.marineapi.nmea.sentence.Sentence;
-import net.sf.marineapi.nmea.sentence.ZDASentence;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
+import parser.BatchComparator;
+import parser.CompressedInput;
+import parser.CsvWriter;
+import parser.LiveNmeaSource;
 import parser.PacketParser;
+import parser.ParseStatistics;
+import parser.SessionCache;
+import parser.TrackMatcher;
 import parser.data.Record;
+import parser.data.RecordRingBuffer;
+import parser.data.RecordTimeIndex;
+import parser.data.TrackColumns;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
-import java.time.ZoneId;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -64,13 +77,55 @@ public class Controller {
     @FXML
     private WebView deltasWebView;
 
-    private final List<Record> sourceRecords = new ArrayList<>();
+    @FXML
+    private ProgressBar parseProgress;
+
+    @FXML
+    private Label parseStatus;
+
+    @FXML
+    private TextField liveAddress;
+
+    @FXML
+    private Button liveButton;
+
+    @FXML
+    private Button followButton;
+
+    private List<Record> sourceRecords = new ArrayList<>();
+
+    private File openedFile;
+
+    private SessionCache sessionCache;
+
+    private TrackColumns track;
+
+    private RecordTimeIndex timeIndex;
+
+    private ParseTask parseTask;
+
+    private LiveNmeaSource liveSource;
+
+    private AnimationTimer liveTimer;
+
+    private final ChartBridge chartBridge = new ChartBridge();
 
     private static final String INFO_FILE_NAME = OUTPUT_PREFIX + "info.csv";
-    private static final String DELTA_FILE_NAME = OUTPUT_PREFIX + "delta.csv";
 
     private static final String[] INFO_CSV_HEADER = {"time", "longitude","latitude","altitude",  "hdop", "vdop", "pdop", "satellite_count"};
 
+    static final TrackMatcher DELTA_MATCHER = TrackMatcher.interpolating();
+
+    private static final int LIVE_BUFFER_CAPACITY = 4096;
+    /**
+     * Интервал обновления интерфейса при чтении в реальном времени (5 кадров в секунду).
+     */
+    private static final long LIVE_FRAME_NANOS = 200_000_000L;
+    /**
+     * Количество последних записей, которые остаются в списке при чтении в реальном времени.
+     */
+    private static final int LIVE_MAX_RECORDS = 100_000;
+
     private static final String HDOP_HTML = "dop-graph.html";
     private static final String POS_HTML = "coordinates.html";
     private static final String DELTA_HTML = "delta-graph.html";
@@ -79,9 +134,12 @@ public class Controller {
 
     @FXML
     private void initialize(){
-        getDeltaDeltaFile();
+        Thread comparison = new Thread(this::getDeltaDeltaFile, "delta-comparison");
+        comparison.setDaemon(true);
+        comparison.start();
         WebEngine factorsEngine = geofactorsWebView.getEngine();
         factorsEngine.setJavaScriptEnabled(true);
+        chartBridge.attach(factorsEngine);
         URL url = getClass().getClassLoader().getResource(HDOP_HTML);
         if (url != null){
             factorsEngine.load(url.toString());
@@ -90,6 +148,7 @@ public class Controller {
         }
         WebEngine coordinatesEngine = coordinatesWebView.getEngine();
         coordinatesEngine.setJavaScriptEnabled(true);
+        chartBridge.attach(coordinatesEngine);
         url = getClass().getClassLoader().getResource(POS_HTML);
         if (url != null){
             coordinatesEngine.load(url.toString());
@@ -99,6 +158,7 @@ public class Controller {
 
         WebEngine deltasEngine = deltasWebView.getEngine();
         deltasEngine.setJavaScriptEnabled(true);
+        chartBridge.attach(deltasEngine);
         url = getClass().getClassLoader().getResource(DELTA_HTML);
         if (url != null){
             deltasEngine.load(url.toString());
@@ -109,38 +169,249 @@ public class Controller {
 
     @FXML
     private void parseAll() {
-        if (sourceRecords.isEmpty()){
+        if (parseTask != null && parseTask.isRunning() || liveSource != null){
+            return;
+        }
+        File file = null;
+        if (sourceRecords.isEmpty() || sessionCache != null){
             String path = nmeaPath.getText();
             if ("".equals(path) || path == null) {
                 nmeaPath.setText("Не выбран файл!");
                 return;
             }
-            File file = new File(path);
-            try {
-                sourceRecords.addAll(PacketParser.parse(file));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            file = new File(path);
+            openedFile = file;
+            sourceRecords = new ArrayList<>();
+            sessionCache = null;
+            timeIndex = null;
         }
-        File outputFolder = new File(OUTPUT_PREFIX);
-        if (!outputFolder.exists()){
-            boolean isCreated = outputFolder.mkdir();
-            if (!isCreated){
-                System.out.println("Error during output folder creation");
+        recordView.setItems(FXCollections.observableList(sourceRecords));
+        ObservableList<Record> items = recordView.getItems();
+        ParseTask task = new ParseTask(file, sourceRecords, items::addAll);
+        parseProgress.progressProperty().bind(task.progressProperty());
+        parseStatus.textProperty().bind(task.messageProperty());
+        parseStatus.setTooltip(null);
+        task.setOnSucceeded(event -> {
+            track = task.getValue();
+            sessionCache = task.getCache();
+            if (sessionCache != null){
+                sourceRecords = task.getRecords();
+                recordView.setItems(PagedRecordList.of(sessionCache));
+                timeIndex = sessionCache.toTimeIndex(sourceRecords);
+            } else {
+                recordView.setItems(PagedRecordList.of(sourceRecords));
+                timeIndex = new RecordTimeIndex(sourceRecords);
             }
+            chartBridge.show(task.getCharts(), task.getPositions());
+            // счётчики по видам ошибок не помещаются в строку состояния
+            ParseStatistics statistics = task.getStatistics();
+            parseStatus.setTooltip(statistics.getLines() > 0 ? new Tooltip(statistics.toString()) : null);
+            finishParsing();
+        });
+        task.setOnFailed(event -> {
+            task.getException().printStackTrace();
+            finishParsing();
+        });
+        task.setOnCancelled(event -> {
+            items.clear();
+            finishParsing();
+            parseStatus.setText("Чтение отменено");
+        });
+        parseTask = task;
+        Thread thread = new Thread(task, "nmea-parser");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @FXML
+    private void cancelParsing() {
+        if (parseTask != null){
+            parseTask.cancel();
         }
-        PacketParser.createPositionCsv(sourceRecords);
-        PacketParser.createDOPCsv(sourceRecords);
-        File trackFile = new File("./input/track.txt");
-        if (trackFile.exists()){
-            List<PacketParser.InertialDTO> inertialDTOS = PacketParser.parseInertialExplorerFile(trackFile);
-            List<PacketParser.InfoDTO> infoDTOS = PacketParser.getDopDTOList(sourceRecords);
-            createActualPositionCsv(inertialDTOS);
-            createDeltaFile(DELTA_FILE_NAME, infoDTOS, inertialDTOS);
+    }
+
+    private void finishParsing() {
+        parseProgress.progressProperty().unbind();
+        parseStatus.textProperty().unbind();
+        parseTask = null;
+    }
+
+    /**
+     * Подключение к источнику NMEA в реальном времени или отключение от него.
+     * Записи собираются в фоновом потоке, список записей и графики обновляются не чаще {@link #LIVE_FRAME_NANOS}.
+     */
+    @FXML
+    private void toggleLive() {
+        if (liveSource != null){
+            stopLive();
+            return;
+        }
+        if (parseTask != null && parseTask.isRunning()){
+            return;
+        }
+        String address = liveAddress.getText();
+        if ("".equals(address) || address == null) {
+            liveAddress.setText("Не указан адрес!");
+            return;
+        }
+        LiveNmeaSource source;
+        try {
+            source = LiveNmeaSource.of(address.trim());
+        } catch (IllegalArgumentException e) {
+            parseStatus.setText("Неверный адрес: " + address);
+            return;
         }
+        sourceRecords = new ArrayList<>();
+        sessionCache = null;
+        openedFile = null;
+        track = null;
+        timeIndex = null;
+        chartBridge.clear();
         recordView.setItems(FXCollections.observableList(sourceRecords));
+        ObservableList<Record> items = recordView.getItems();
+        startLive(source, batch -> {
+            items.addAll(batch);
+            if (items.size() > LIVE_MAX_RECORDS){
+                items.remove(0, items.size() - LIVE_MAX_RECORDS);
+            }
+        });
+        liveButton.setText("Отключиться");
+    }
+
+    /**
+     * Слежение за открытым файлом, который продолжает записываться, или его остановка.
+     * Читаются только байты, дописанные после начала последней записи; новые записи добавляются к списку и графикам.
+     */
+    @FXML
+    private void toggleFollow() {
+        if (liveSource != null){
+            stopLive();
+            return;
+        }
+        if (parseTask != null && parseTask.isRunning()){
+            return;
+        }
+        if (openedFile == null || sourceRecords.isEmpty()){
+            parseStatus.setText("Сначала откройте файл");
+            return;
+        }
+        try {
+            if (CompressedInput.isCompressed(openedFile)){
+                parseStatus.setText("Сжатый файл нельзя отслеживать");
+                return;
+            }
+        } catch (IOException e) {
+            parseStatus.setText("Файл недоступен: " + e.getMessage());
+            return;
+        }
+        Record last = sourceRecords.get(sourceRecords.size() - 1);
+        LiveNmeaSource source = LiveNmeaSource.follow(openedFile, last.getOffset(), last.getNumber());
+        FollowedRecords records = FollowedRecords.of(sourceRecords, sessionCache);
+        PagedRecordList view = records.view();
+        sourceRecords = records;
+        timeIndex = null;
+        recordView.setItems(view);
+        startLive(source, batch -> {
+            records.append(batch);
+            view.appended(batch.size());
+        });
+        followButton.setText("Остановить");
+    }
+
+    /**
+     * Запускает чтение источника; собранные записи передаются sink в потоке JavaFX не чаще {@link #LIVE_FRAME_NANOS}.
+     */
+    private void startLive(LiveNmeaSource source, Consumer<List<Record>> sink) {
+        RecordRingBuffer buffer = new RecordRingBuffer(LIVE_BUFFER_CAPACITY);
+        List<Record> batch = new ArrayList<>();
+        long offsetMillis = OffsetDateTime.now().getOffset().getTotalSeconds() * 1000L;
+        liveTimer = new AnimationTimer() {
+            private long lastFrame;
+
+            @Override
+            public void handle(long now) {
+                if (now - lastFrame < LIVE_FRAME_NANOS){
+                    return;
+                }
+                lastFrame = now;
+                // состояние берётся до выборки, чтобы записи, добавленные перед завершением чтения, не потерялись
+                boolean running = source.isRunning();
+                batch.clear();
+                if (buffer.drainTo(batch) > 0){
+                    sink.accept(batch);
+                    pushLiveCharts(batch, offsetMillis);
+                }
+                if (!running){
+                    stopLive();
+                    if (source.isTruncated()){
+                        reopenTruncated();
+                        return;
+                    }
+                    IOException error = source.getError();
+                    parseStatus.setText("Соединение закрыто" + (error != null ? ": " + error.getMessage() : ""));
+                    return;
+                }
+                parseStatus.setText("Записей: " + recordView.getItems().size() + ", пропущено: " + buffer.getDropped());
+            }
+        };
+        liveSource = source;
+        source.start(buffer);
+        liveTimer.start();
+    }
+
+    /**
+     * Файл, за которым следили, перезаписан: прочитанные записи ему больше не соответствуют, поэтому он читается заново.
+     */
+    private void reopenTruncated() {
+        sourceRecords = new ArrayList<>();
+        sessionCache = null;
+        timeIndex = null;
+        nmeaPath.setText(openedFile.getPath());
+        parseAll();
     }
 
+    private void stopLive() {
+        liveTimer.stop();
+        try {
+            liveSource.close();
+        } catch (IOException e) {
+            System.out.println("Error occurred during live source closing");
+        }
+        liveSource = null;
+        liveTimer = null;
+        if (sourceRecords instanceof FollowedRecords){
+            timeIndex = ((FollowedRecords) sourceRecords).timeIndex();
+        } else {
+            timeIndex = new RecordTimeIndex(sourceRecords);
+        }
+        liveButton.setText("Подключиться");
+        followButton.setText("Следить");
+    }
+
+    /**
+     * Передаёт новые точки на страницы графиков DOP и координат, если страница поддерживает обновление (live.js).
+     */
+    private void pushLiveCharts(List<Record> batch, long offsetMillis) {
+        StringBuilder dop = new StringBuilder("[");
+        StringBuilder positions = new StringBuilder("[");
+        for (Record record : batch){
+            if (record.hasDOP() && record.getEpochMillis() != Long.MIN_VALUE){
+                dop.append('[').append(record.getEpochMillis() - offsetMillis).append(',').append(record.getHDOP())
+                        .append(',').append(record.getVDOP()).append(',').append(record.getPDOP()).append("],");
+            }
+            if (record.hasPosition()){
+                positions.append('[').append(record.getLatitude()).append(',').append(record.getLongitude()).append("],");
+            }
+        }
+        dop.append(']');
+        positions.append(']');
+        geofactorsWebView.getEngine().executeScript("if (typeof appendLiveDop === 'function') appendLiveDop(" + dop + ")");
+        coordinatesWebView.getEngine().executeScript("if (typeof appendLivePositions === 'function') appendLivePositions(" + positions + ")");
+    }
+
+    /**
+     * Сравнивает все файлы из ./input/compared/ с эталонным треком, вызывается в фоновом потоке.
+     */
     private void getDeltaDeltaFile(){
         File trackFile = new File("./input/track.txt");
         if (!trackFile.exists()){
@@ -165,38 +436,40 @@ public class Controller {
         if (comparedFiles.isEmpty()){
             return;
         }
-        List<PacketParser.InertialDTO> inertialDTOS = PacketParser.parseInertialExplorerFile(trackFile);
-        comparedFiles.forEach(
-                file -> {
-                    String fileName = file.getName();
-                    String finalPath = OUTPUT_PREFIX + "compared/" +fileName;
-                    List<RTKPostDTO> currentPwtList = parseRTKPostFile(file);
-                    createDeltaFile(finalPath, inertialDTOS, currentPwtList);
-                }
-        );
+        long start = System.nanoTime();
+        BatchComparator comparator = new BatchComparator(trackFile, DELTA_MATCHER);
+        try {
+            List<BatchComparator.FileResult> results = comparator.compare(comparedFiles, new File(OUTPUT_PREFIX + "compared/"),
+                    Runtime.getRuntime().availableProcessors());
+            results.forEach(System.out::println);
+            System.out.println("Сравнено файлов: " + results.size() + " за " + (System.nanoTime() - start) / 1_000_000 + " мс");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @FXML
     private void parseFromInterval() {
         LocalDate fromDate = fromPicker.getValue();
         LocalDate toDate = toPicker.getValue();
-        List<Record> filtered = sourceRecords.stream().filter(record -> {
-            Optional<Sentence> optional = record.getSentences().stream().filter(x -> "ZDA".equals(x.getSentenceId())).findFirst();
-            if (!optional.isPresent()) {
-                return false;
-            }
-            Sentence sentence = optional.get();
-            ZDASentence zda = (ZDASentence) sentence;
-            LocalDate date = zda.toDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-            return fromDate.compareTo(date) <= 0 && toDate.compareTo(date) >= 0;
-        }).collect(Collectors.toList());
-        recordView.setItems(FXCollections.observableList(filtered));
+        if (timeIndex == null || fromDate == null || toDate == null) {
+            return;
+        }
+        List<Record> filtered = timeIndex.between(fromDate.atStartOfDay(), toDate.plusDays(1).atStartOfDay());
+        recordView.setItems(PagedRecordList.of(filtered));
     }
 
     @FXML
     public void selectRecord() {
         Record currentRecord = recordView.getSelectionModel().getSelectedItem();
-        sentenceView.setItems(FXCollections.observableList(currentRecord.getSentences()));
+        if (currentRecord == null){
+            return;
+        }
+        try {
+            sentenceView.setItems(FXCollections.observableList(currentRecord.getSentences()));
+        } catch (UncheckedIOException e) {
+            System.out.println("Error occurred during record reading: " + e.getCause().getMessage());
+        }
     }
 
     @FXML
@@ -213,6 +486,8 @@ public class Controller {
     public void pickFile(){
         FileChooser fileChooser = new FileChooser();
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("TXT files", "*.txt"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("GZIP files", "*.gz", "*.bgz"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Zstandard files", "*.zst"));
         File f = fileChooser.showOpenDialog(null);
 
         if (f != null){
@@ -222,20 +497,22 @@ public class Controller {
 
     @FXML
     public void createOutputFile(){
-        if (sourceRecords.isEmpty()){
+        if (sourceRecords.isEmpty() || track == null){
             System.out.println("Данные отсутствуют!!!");
             return;
         }
-        List<PacketParser.InfoDTO> sources = PacketParser.getDopDTOList(sourceRecords);
         File outputFile = new File(INFO_FILE_NAME);
-        try (FileWriter output = new FileWriter(outputFile); CSVPrinter printer = new CSVPrinter(output, CSVFormat.DEFAULT.withDelimiter(' ').withHeader(INFO_CSV_HEADER))){
-            sources.forEach(x->{
-                try {
-                    printer.printRecord(x.getDateTime(), x.getLongitude(), x.getLatitude(), x.getAltitude(),  x.getHDOP(), x.getVDOP(), x.getPDOP(), x.getSatelliteCount());
-                } catch (IOException e) {
-                    System.out.println("Error occurred during writing line");
+        try (CsvWriter writer = new CsvWriter(outputFile, ' ')){
+            writer.header(INFO_CSV_HEADER);
+            for (int i = 0; i < track.size(); i++){
+                if (track.isComplete(i)){
+                    writer.field(track.getDateTime(i).toString())
+                            .field(track.getLongitude(i), CsvWriter.DEGREES).field(track.getLatitude(i), CsvWriter.DEGREES)
+                            .field(track.getAltitude(i), CsvWriter.METERS)
+                            .field(track.getHDOP(i), CsvWriter.DOP).field(track.getVDOP(i), CsvWriter.DOP).field(track.getPDOP(i), CsvWriter.DOP)
+                            .field(track.getSatelliteCount(i)).endRow();
                 }
-            });
+            }
         } catch (IOException e) {
             System.out.println("Error occurred during output file creation");
         }
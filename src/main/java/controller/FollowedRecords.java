@@ -0,0 +1,86 @@
+package controller;
+
+import org.jetbrains.annotations.Nullable;
+import parser.SessionCache;
+import parser.data.Record;
+import parser.data.RecordTimeIndex;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Записи файла, за которым следит {@link parser.LiveNmeaSource#follow}: уже прочитанные записи и записи, добавляемые по мере
+ * дописывания файла. Последняя прочитанная запись могла быть не дописана, поэтому она не входит в список,
+ * а собирается заново вместе с новыми строками. Записи из кэша сессии не копируются и читаются из него при обращении.
+ */
+class FollowedRecords extends AbstractList<Record> {
+
+    @Nullable
+    private final SessionCache cache;
+    /**
+     * Количество первых записей, которые читаются из кэша.
+     */
+    private final int cached;
+    private final List<Record> appended = new ArrayList<>();
+
+    private FollowedRecords(@Nullable SessionCache cache, int cached) {
+        this.cache = cache;
+        this.cached = cached;
+    }
+
+    /**
+     * @param records прочитанные записи, не пустые; при слежении повторно - предыдущий список {@link FollowedRecords}
+     * @param cache   кэш, из которого прочитаны первые записи, или null
+     */
+    static FollowedRecords of(List<Record> records, @Nullable SessionCache cache) {
+        int kept = records.size() - 1;
+        // последняя запись кэша тоже могла быть не дописана
+        int cached = cache == null ? 0 : Math.max(0, Math.min(kept, cache.size() - 1));
+        FollowedRecords result = new FollowedRecords(cache, cached);
+        result.appended.addAll(records.subList(cached, kept));
+        return result;
+    }
+
+    void append(List<Record> records) {
+        appended.addAll(records);
+    }
+
+    @Override
+    public Record get(int index) {
+        return index < cached ? cache.readRecord(index) : appended.get(index - cached);
+    }
+
+    @Override
+    public int size() {
+        return cached + appended.size();
+    }
+
+    /**
+     * Список для {@link javafx.scene.control.ListView}: страницы записей кэша читаются из файла одним обращением.
+     * Добавленные записи учитываются {@link PagedRecordList#appended(int)}.
+     */
+    PagedRecordList view() {
+        return new PagedRecordList(size(), (from, to) -> {
+            List<Record> page = new ArrayList<>(to - from);
+            if (from < cached) {
+                page.addAll(cache.readRecords(from, Math.min(to, cached)));
+            }
+            if (to > cached) {
+                page.addAll(appended.subList(Math.max(from, cached) - cached, to - cached));
+            }
+            return page;
+        });
+    }
+
+    /**
+     * Индекс по времени без чтения записей кэша: их время берётся из кэша.
+     */
+    RecordTimeIndex timeIndex() {
+        long[] times = new long[size()];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = i < cached ? cache.getEpochMillis(i) : appended.get(i - cached).getEpochMillis();
+        }
+        return new RecordTimeIndex(this, times);
+    }
+}
@@ -0,0 +1,94 @@
+package controller;
+
+import javafx.collections.ObservableListBase;
+import parser.SessionCache;
+import parser.data.Record;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемый список записей для {@link javafx.scene.control.ListView}, который загружает записи страницами.
+ * Список отображает только видимые строки, поэтому в памяти находятся лишь несколько последних запрошенных страниц,
+ * а повторные обращения к видимым записям возвращают те же объекты (это нужно для выделения в списке).
+ */
+class PagedRecordList extends ObservableListBase<Record> {
+
+    static final int PAGE_SIZE = 256;
+    private static final int MAX_PAGES = 16;
+
+    /**
+     * Загрузка записей с индексами [from, to).
+     */
+    interface PageLoader {
+        List<Record> load(int from, int to);
+    }
+
+    private int size;
+    private final PageLoader loader;
+    private final Map<Integer, List<Record>> pages = new LinkedHashMap<Integer, List<Record>>(MAX_PAGES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Record>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    PagedRecordList(int size, PageLoader loader) {
+        this.size = size;
+        this.loader = loader;
+    }
+
+    /**
+     * Список поверх записей в памяти или представления (например, интервала {@link parser.data.RecordTimeIndex}).
+     * Копируются только ссылки на записи загруженных страниц.
+     */
+    static PagedRecordList of(List<Record> records) {
+        return new PagedRecordList(records.size(), (from, to) -> new ArrayList<>(records.subList(from, to)));
+    }
+
+    /**
+     * Список поверх кэша сессии: страница читается из исходного файла одним обращением.
+     */
+    static PagedRecordList of(SessionCache cache) {
+        return new PagedRecordList(cache.size(), cache::readRecords);
+    }
+
+    /**
+     * Учитывает записи, добавленные в конец списка, из которого загружаются страницы (слежение за файлом).
+     * Вызывается в потоке JavaFX.
+     */
+    void appended(int count) {
+        if (count <= 0) {
+            return;
+        }
+        int from = size;
+        // последняя страница могла быть загружена неполной
+        pages.remove(from / PAGE_SIZE);
+        size += count;
+        beginChange();
+        nextAdd(from, size);
+        endChange();
+    }
+
+    @Override
+    public Record get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        int page = index / PAGE_SIZE;
+        List<Record> records = pages.get(page);
+        if (records == null) {
+            int from = page * PAGE_SIZE;
+            records = loader.load(from, Math.min(size, from + PAGE_SIZE));
+            pages.put(page, records);
+        }
+        return records.get(index % PAGE_SIZE);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,171 @@
+package controller;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import org.jetbrains.annotations.Nullable;
+import parser.CompressedInput;
+import parser.PacketParser;
+import parser.ParallelPacketParser;
+import parser.ParseStatistics;
+import parser.SessionCache;
+import parser.ValidationPolicy;
+import parser.data.ChartSeries;
+import parser.data.Record;
+import parser.data.SpatialIndex;
+import parser.data.TrackColumns;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import static parser.PacketParser.*;
+
+/**
+ * Фоновая задача чтения NMEA-файла и создания выходных файлов.
+ * Разобранные записи передаются в интерфейс частями по мере чтения, прогресс считается по прочитанным байтам.
+ * Если рядом с файлом есть действительный {@link SessionCache}, файл не разбирается, а записи читаются из него при обращении;
+ * иначе кэш создаётся после разбора. Сжатый файл распаковывается при чтении, кэш для него не создаётся.
+ */
+class ParseTask extends Task<TrackColumns> {
+
+    private static final String DELTA_FILE_NAME = OUTPUT_PREFIX + "delta.csv";
+
+    @Nullable
+    private final File nmeaFile;
+    private List<Record> records;
+    @Nullable
+    private SessionCache cache;
+    private final Consumer<List<Record>> batchConsumer;
+    private final ParseStatistics statistics = new ParseStatistics();
+    private Map<String, ChartSeries> charts = Collections.emptyMap();
+    @Nullable
+    private SpatialIndex positions;
+
+    /**
+     * @param nmeaFile      файл для чтения или null, если записи уже загружены
+     * @param loaded        ранее загруженные записи
+     * @param batchConsumer получатель новых записей, вызывается в потоке JavaFX
+     */
+    ParseTask(@Nullable File nmeaFile, List<Record> loaded, Consumer<List<Record>> batchConsumer) {
+        this.nmeaFile = nmeaFile;
+        this.records = new ArrayList<>(loaded);
+        this.batchConsumer = batchConsumer;
+    }
+
+    @Override
+    protected TrackColumns call() throws Exception {
+        if (nmeaFile != null) {
+            cache = SessionCache.open(nmeaFile);
+        }
+        TrackColumns track = null;
+        if (cache != null) {
+            updateMessage("Чтение кэша...");
+            records = cache.records();
+            track = cache.toTrackColumns();
+        } else if (nmeaFile != null) {
+            updateMessage("Чтение файла...");
+            ParallelPacketParser.parseLazy(nmeaFile, ForkJoinPool.commonPool(), (batch, bytesRead, totalBytes) -> {
+                records.addAll(batch);
+                updateProgress(bytesRead, totalBytes);
+                updateMessage("Прочитано записей: " + records.size() + " (" + bytesRead / (1 << 20) + " из " + totalBytes / (1 << 20) + " МБ)");
+                Platform.runLater(() -> {
+                    if (!isCancelled()) {
+                        batchConsumer.accept(batch);
+                    }
+                });
+            }, ValidationPolicy.DEFAULT, statistics);
+            if (statistics.hasProblems()) {
+                System.out.println(nmeaFile + ": " + statistics);
+            }
+            // по смещениям в сжатом файле записи не прочитать, поэтому кэш для него не создаётся
+            if (!isCancelled() && !CompressedInput.isCompressed(nmeaFile)) {
+                writeCache(nmeaFile);
+            }
+        }
+        if (isCancelled()) {
+            return null;
+        }
+        updateMessage("Создание выходных файлов...");
+        File outputFolder = new File(OUTPUT_PREFIX);
+        if (!outputFolder.exists()){
+            boolean isCreated = outputFolder.mkdir();
+            if (!isCreated){
+                System.out.println("Error during output folder creation");
+            }
+        }
+        if (track == null) {
+            track = TrackColumns.of(records.stream());
+        }
+        PacketParser.createPositionCsv(track);
+        PacketParser.createDOPCsv(track);
+        Map<String, ChartSeries> series = ChartBridge.trackSeries(track);
+        positions = SpatialIndex.of(track);
+        File trackFile = new File("./input/track.txt");
+        if (trackFile.exists() && !isCancelled()){
+            updateMessage("Расчёт разностей с эталонным треком...");
+            List<PacketParser.InertialDTO> inertialDTOS = PacketParser.parseInertialExplorerFile(trackFile);
+            createActualPositionCsv(inertialDTOS);
+            ChartBridge.DeltaSeries deltaSeries = new ChartBridge.DeltaSeries();
+            createDeltaFile(DELTA_FILE_NAME, track.asPositionList(), inertialDTOS, Controller.DELTA_MATCHER, deltaSeries);
+            deltaSeries.putTo(series);
+        }
+        charts = series;
+        updateProgress(1, 1);
+        updateMessage("Записей: " + records.size()
+                + (statistics.getSkipped() > 0 ? ", отброшено строк с ошибками: " + statistics.getSkipped() : ""));
+        return track;
+    }
+
+    /**
+     * @return кэш, из которого прочитаны записи, или null, если файл разбирался
+     */
+    @Nullable
+    SessionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return записи файла; при чтении из кэша - представление, читающее записи при обращении
+     */
+    List<Record> getRecords() {
+        return records;
+    }
+
+    /**
+     * @return счётчики проверки строк; пустые, если записи прочитаны из кэша
+     */
+    ParseStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return ряды графиков {@link ChartBridge} по разобранному треку
+     */
+    Map<String, ChartSeries> getCharts() {
+        return charts;
+    }
+
+    /**
+     * @return индекс координат разобранного трека или null, если задача не завершилась
+     */
+    @Nullable
+    SpatialIndex getPositions() {
+        return positions;
+    }
+
+    private void writeCache(File nmeaFile) {
+        updateMessage("Создание кэша...");
+        try {
+            if (!SessionCache.write(nmeaFile, records)) {
+                System.out.println("Cache was not created: record offsets do not match records of " + nmeaFile + " or the cache would exceed 2 GB");
+            }
+        } catch (IOException e) {
+            System.out.println("Error occurred during cache writing: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package parser;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static parser.PacketParser.*;
+
+/**
+ * Сравнение набора файлов RTKPOST с одним эталонным треком Inertial Explorer.
+ * Эталон читается один раз и используется всеми задачами только для чтения,
+ * файлы обрабатываются пулом из не более чем parallelism потоков, для каждого файла замеряется время чтения и записи разностей.
+ */
+public class BatchComparator {
+
+    public static class FileResult {
+        private final File source;
+        private final File output;
+        private final int epochs;
+        private final long parseMillis;
+        private final long deltaMillis;
+        @Nullable
+        private final Exception error;
+
+        FileResult(File source, File output, int epochs, long parseMillis, long deltaMillis, @Nullable Exception error) {
+            this.source = source;
+            this.output = output;
+            this.epochs = epochs;
+            this.parseMillis = parseMillis;
+            this.deltaMillis = deltaMillis;
+            this.error = error;
+        }
+
+        public File getSource() {
+            return source;
+        }
+
+        public File getOutput() {
+            return output;
+        }
+
+        public int getEpochs() {
+            return epochs;
+        }
+
+        public long getParseMillis() {
+            return parseMillis;
+        }
+
+        public long getDeltaMillis() {
+            return deltaMillis;
+        }
+
+        @Nullable
+        public Exception getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) {
+                return source.getName() + ": ошибка " + error;
+            }
+            return source.getName() + ": эпох " + epochs + ", чтение " + parseMillis + " мс, разности " + deltaMillis + " мс";
+        }
+    }
+
+    private final List<InertialDTO> reference;
+    private final TrackMatcher matcher;
+
+    public BatchComparator(List<InertialDTO> reference, TrackMatcher matcher) {
+        this.reference = Collections.unmodifiableList(new ArrayList<>(reference));
+        this.matcher = matcher;
+    }
+
+    public BatchComparator(File referenceFile, TrackMatcher matcher) {
+        this(parseInertialExplorerFile(referenceFile), matcher);
+    }
+
+    /**
+     * @param files        файлы RTKPOST
+     * @param outputFolder каталог для файлов разностей, имя файла разностей совпадает с именем исходного файла
+     * @param parallelism  максимальное количество одновременно обрабатываемых файлов
+     * @return результаты в порядке files
+     */
+    public List<FileResult> compare(List<File> files, File outputFolder, int parallelism) throws InterruptedException {
+        if (!outputFolder.exists() && !outputFolder.mkdirs()) {
+            System.out.println("Error during output folder creation");
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, files.size())), runnable -> {
+            Thread thread = new Thread(runnable, "delta-comparison-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Callable<FileResult>> tasks = new ArrayList<>(files.size());
+            for (File file : files) {
+                tasks.add(() -> compare(file, new File(outputFolder, file.getName())));
+            }
+            List<FileResult> results = new ArrayList<>(files.size());
+            for (Future<FileResult> future : executor.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private FileResult compare(File file, File output) {
+        long start = System.nanoTime();
+        try {
+            List<RTKPostDTO> track = parseRTKPostFile(file);
+            long parsed = System.nanoTime();
+            if (!track.isEmpty() && !reference.isEmpty()) {
+                createDeltaFile(output.getPath(), track, reference, matcher);
+            }
+            long written = System.nanoTime();
+            return new FileResult(file, output, track.size(), (parsed - start) / 1_000_000, (written - parsed) / 1_000_000, null);
+        } catch (RuntimeException e) {
+            return new FileResult(file, output, 0, (System.nanoTime() - start) / 1_000_000, 0, e);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package parser;
+
+import org.jetbrains.annotations.Nullable;
+import parser.data.Record;
+import parser.data.TrackColumns;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static parser.PacketParser.*;
+
+/**
+ * Пакетная обработка NMEA-файлов без интерфейса: разбор, файлы координат и DOP и, если задан эталонный трек Inertial Explorer,
+ * файл разностей. Для каждого файла результаты записываются в отдельный каталог с именем файла.
+ * Файлы обрабатываются одновременно не более чем parallelism потоками, части каждого файла разбираются общим {@link ForkJoinPool}
+ * того же размера, поэтому загрузка процессора не зависит от соотношения количества и размера файлов.
+ * <pre>
+ * java -cp nmea-gui-1.0-SNAPSHOT.jar:marineapi-0.11.0.jar:aircompressor-0.27.jar parser.BatchParser --batch "logs/*.txt" --out output/batch --threads 8 [--reference track.txt]
+ * </pre>
+ * Из зависимостей нужны marineapi и aircompressor (сжатые журналы, см. {@link CompressedInput}).
+ * Запускается отдельным классом без JavaFX: класс, наследующий Application, java запускает через JavaFX,
+ * которому нужны модули JavaFX и дисплей.
+ */
+public class BatchParser {
+
+    public static final String BATCH_OPTION = "--batch";
+    private static final String OUT_OPTION = "--out";
+    private static final String THREADS_OPTION = "--threads";
+    private static final String REFERENCE_OPTION = "--reference";
+    private static final String USAGE = "Usage: " + BATCH_OPTION + " <dir|glob> [" + OUT_OPTION + " <dir>] ["
+            + THREADS_OPTION + " N] [" + REFERENCE_OPTION + " <Inertial Explorer file>]";
+
+    private static final String POSITION_FILE_NAME = "pos.csv";
+    private static final String DOP_FILE_NAME = "dop.csv";
+    private static final String DELTA_FILE_NAME = "delta.csv";
+
+    public static class FileResult {
+        private final File source;
+        private final File outputFolder;
+        private final long bytes;
+        private final int records;
+        private final long parseMillis;
+        private final long writeMillis;
+        private final ParseStatistics statistics;
+        @Nullable
+        private final Exception error;
+
+        FileResult(File source, File outputFolder, long bytes, int records, long parseMillis, long writeMillis,
+                   ParseStatistics statistics, @Nullable Exception error) {
+            this.source = source;
+            this.outputFolder = outputFolder;
+            this.bytes = bytes;
+            this.records = records;
+            this.parseMillis = parseMillis;
+            this.writeMillis = writeMillis;
+            this.statistics = statistics;
+            this.error = error;
+        }
+
+        public File getSource() {
+            return source;
+        }
+
+        public File getOutputFolder() {
+            return outputFolder;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public int getRecords() {
+            return records;
+        }
+
+        public long getParseMillis() {
+            return parseMillis;
+        }
+
+        public long getWriteMillis() {
+            return writeMillis;
+        }
+
+        public ParseStatistics getStatistics() {
+            return statistics;
+        }
+
+        @Nullable
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * @return скорость разбора в мегабайтах в секунду
+         */
+        public double getMegabytesPerSecond() {
+            return bytes / (1024.0 * 1024.0) / Math.max(1, parseMillis) * 1000;
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) {
+                return source.getName() + ": ошибка " + error;
+            }
+            return String.format("%s: записей %d, %.1f МБ, чтение %d мс (%.1f МБ/с, %.0f записей/с), запись %d мс, %s",
+                    source.getName(), records, bytes / (1024.0 * 1024.0), parseMillis, getMegabytesPerSecond(),
+                    records * 1000.0 / Math.max(1, parseMillis), writeMillis, statistics);
+        }
+    }
+
+    @Nullable
+    private final List<InertialDTO> reference;
+    private final TrackMatcher matcher;
+    private final ValidationPolicy policy;
+
+    /**
+     * @param reference эталонный трек для файлов разностей или null
+     */
+    public BatchParser(@Nullable List<InertialDTO> reference, TrackMatcher matcher, ValidationPolicy policy) {
+        this.reference = reference == null ? null : Collections.unmodifiableList(new ArrayList<>(reference));
+        this.matcher = matcher;
+        this.policy = policy;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Запуск из командной строки, см. {@link #USAGE}.
+     *
+     * @return код завершения: 0, если все файлы обработаны без ошибок
+     */
+    public static int run(String[] args) {
+        String input = null;
+        File outputFolder = new File(OUTPUT_PREFIX, "batch");
+        int threads = Runtime.getRuntime().availableProcessors();
+        File referenceFile = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case BATCH_OPTION:
+                        input = args[++i];
+                        break;
+                    case OUT_OPTION:
+                        outputFolder = new File(args[++i]);
+                        break;
+                    case THREADS_OPTION:
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case REFERENCE_OPTION:
+                        referenceFile = new File(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (input == null || threads < 1) {
+                throw new IllegalArgumentException("Input files are not specified");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.out.println(e.getMessage());
+            System.out.println(USAGE);
+            return 2;
+        }
+        try {
+            List<File> files = findFiles(input);
+            if (files.isEmpty()) {
+                System.out.println("No files found: " + input);
+                return 1;
+            }
+            List<InertialDTO> reference = referenceFile == null ? null : parseInertialExplorerFile(referenceFile);
+            BatchParser parser = new BatchParser(reference, TrackMatcher.interpolating(), ValidationPolicy.DEFAULT);
+            long start = System.nanoTime();
+            List<FileResult> results = parser.process(files, outputFolder, threads);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            results.forEach(System.out::println);
+            long bytes = results.stream().mapToLong(FileResult::getBytes).sum();
+            long failed = results.stream().filter(x -> x.getError() != null).count();
+            System.out.println(String.format("Файлов: %d, ошибок: %d, %.1f МБ за %d мс (%.1f МБ/с), потоков: %d",
+                    results.size(), failed, bytes / (1024.0 * 1024.0), millis, bytes / (1024.0 * 1024.0) / Math.max(1, millis) * 1000, threads));
+            return failed == 0 ? 0 : 1;
+        } catch (IOException e) {
+            System.out.println("Error occurred during input files search: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    /**
+     * @param input каталог (берутся все файлы в нём) или шаблон пути glob, например logs/*.nmea
+     * @return найденные файлы в порядке имён, без файлов кэша {@link SessionCache}
+     */
+    public static List<File> findFiles(String input) throws IOException {
+        if (new File(input).isFile()) {
+            return Collections.singletonList(new File(input));
+        }
+        Stream<Path> paths;
+        if (new File(input).isDirectory()) {
+            paths = Files.list(Paths.get(input));
+        } else {
+            // обход начинается с каталога, предшествующего первому символу шаблона
+            String prefix = input.replaceAll("[*?\\[{].*", "");
+            int separator = Math.max(prefix.lastIndexOf('/'), prefix.lastIndexOf(File.separatorChar));
+            Path base = Paths.get(separator < 0 ? "" : prefix.substring(0, separator + 1));
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+            paths = Files.walk(base).filter(matcher::matches);
+        }
+        try (Stream<Path> files = paths) {
+            return files.filter(Files::isRegularFile)
+                    .map(Path::toFile)
+                    .filter(x -> !x.getName().endsWith(SessionCache.EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @param outputFolder каталог, в котором для каждого файла создаётся каталог с его именем
+     * @param parallelism  максимальное количество одновременно обрабатываемых файлов и потоков разбора
+     * @return результаты в порядке files
+     */
+    public List<FileResult> process(List<File> files, File outputFolder, int parallelism) throws InterruptedException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, files.size())), runnable -> {
+            Thread thread = new Thread(runnable, "batch-parser-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Callable<FileResult>> tasks = new ArrayList<>(files.size());
+            for (File file : files) {
+                tasks.add(() -> process(file, new File(outputFolder, file.getName()), pool));
+            }
+            List<FileResult> results = new ArrayList<>(files.size());
+            for (Future<FileResult> future : executor.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+            pool.shutdownNow();
+        }
+    }
+
+    private FileResult process(File file, File outputFolder, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        ParseStatistics statistics = new ParseStatistics();
+        long bytes = file.length();
+        try {
+            List<Record> records = ParallelPacketParser.parseLazy(file, pool, (batch, bytesRead, totalBytes) -> { }, policy, statistics);
+            TrackColumns track = TrackColumns.of(records.stream());
+            long parsed = System.nanoTime();
+            if (!outputFolder.exists() && !outputFolder.mkdirs()) {
+                throw new IOException("Cannot create output folder " + outputFolder);
+            }
+            createPositionCsv(track, new File(outputFolder, POSITION_FILE_NAME).getPath());
+            createDOPCsv(track, new File(outputFolder, DOP_FILE_NAME).getPath());
+            if (reference != null && !reference.isEmpty() && track.size() > 0) {
+                createDeltaFile(new File(outputFolder, DELTA_FILE_NAME).getPath(), track.asPositionList(), reference, matcher);
+            }
+            long written = System.nanoTime();
+            return new FileResult(file, outputFolder, bytes, records.size(), (parsed - start) / 1_000_000,
+                    (written - parsed) / 1_000_000, statistics, null);
+        } catch (IOException | RuntimeException e) {
+            return new FileResult(file, outputFolder, bytes, 0, (System.nanoTime() - start) / 1_000_000, 0, statistics, e);
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package parser;
+
+import io.airlift.compress.zstd.ZstdDecompressor;
+import io.airlift.compress.zstd.ZstdInputStream;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Чтение сжатых NMEA-файлов и файлов треков без распаковки на диск. Формат определяется по первым байтам файла, а не по расширению.
+ * gzip распаковывается потоком, в том числе файл из нескольких склеенных частей. Файл bgzip (части gzip не больше 64 КБ
+ * с размером части в дополнительном поле BC, как у samtools/htslib) распаковывается по частям параллельно в {@link ForkJoinPool},
+ * части отдаются в порядке файла. Файл zstd из нескольких кадров (pzstd, zstd -T с независимыми кадрами, склеенные файлы)
+ * тоже распаковывается по кадрам параллельно; файл из одного кадра распаковывается потоком. Для zstd используется aircompressor
+ * (код на Java без нативных библиотек). xz распознаётся, но не поддерживается: для него выбрасывается исключение с названием формата.
+ * Несжатый файл читается как есть.
+ */
+public class CompressedInput extends FilterInputStream {
+
+    public enum Format {
+        PLAIN,
+        GZIP,
+        /**
+         * gzip из независимых частей с известным размером (BGZF).
+         */
+        BGZIP,
+        /**
+         * Zstandard, в том числе из нескольких кадров.
+         */
+        ZSTD,
+        XZ
+    }
+
+    private static final int HEADER_SIZE = 18;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int GZIP_FLAG_EXTRA = 4;
+    private static final int ZSTD_MAGIC = 0xFD2FB528;
+    /**
+     * Пропускаемые кадры zstd: сигнатуры 0x184D2A50 - 0x184D2A5F.
+     */
+    private static final int ZSTD_SKIPPABLE_MAGIC = 0x184D2A50;
+    private static final int ZSTD_SKIPPABLE_MASK = 0xFFFFFFF0;
+    private static final int ZSTD_BLOCK_HEADER_SIZE = 3;
+    private static final int ZSTD_CHECKSUM_SIZE = 4;
+    /**
+     * Частей bgzip или кадров zstd в распаковке на поток пула; больше не нужно, чтобы потоки не простаивали, пока читатель разбирает строки.
+     */
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    private final Format format;
+    private final Progress progress;
+
+    /**
+     * Количество прочитанных байтов сжатого файла.
+     */
+    private interface Progress {
+        long position();
+    }
+
+    private CompressedInput(InputStream in, Format format, Progress progress) {
+        super(in);
+        this.format = format;
+        this.progress = progress;
+    }
+
+    public static CompressedInput open(File file) throws IOException {
+        return open(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool пул, в котором распаковываются части bgzip
+     * @throws IOException если формат не поддерживается или файл не удалось открыть
+     */
+    public static CompressedInput open(File file, ForkJoinPool pool) throws IOException {
+        Format format = detect(file);
+        switch (format) {
+            case BGZIP: {
+                BlockInputStream blocks = new BlockInputStream(file, pool, new BgzipBlocks(file));
+                return new CompressedInput(blocks, format, blocks::position);
+            }
+            case ZSTD: {
+                ZstdFrames frames = new ZstdFrames(file);
+                if (!frames.hasSeveralFrames()) {
+                    CountingInputStream counter = new CountingInputStream(new FileInputStream(file));
+                    return new CompressedInput(new ZstdInputStream(new BufferedInputStream(counter, BUFFER_SIZE)), format, counter::position);
+                }
+                BlockInputStream blocks = new BlockInputStream(file, pool, frames);
+                return new CompressedInput(blocks, format, blocks::position);
+            }
+            case GZIP: {
+                CountingInputStream counter = new CountingInputStream(new FileInputStream(file));
+                return new CompressedInput(new GZIPInputStream(counter, BUFFER_SIZE), format, counter::position);
+            }
+            case PLAIN: {
+                CountingInputStream counter = new CountingInputStream(new FileInputStream(file));
+                return new CompressedInput(counter, format, counter::position);
+            }
+            default:
+                throw new IOException(file + ": " + format + " compression is not supported, decompress the file first");
+        }
+    }
+
+    /**
+     * Строки файла в кодировке ISO-8859-1, как при разборе файла, отображённого в память.
+     */
+    public static BufferedReader reader(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(open(file), StandardCharsets.ISO_8859_1), BUFFER_SIZE);
+    }
+
+    public static boolean isCompressed(File file) throws IOException {
+        return detect(file) != Format.PLAIN;
+    }
+
+    /**
+     * Определяет формат по сигнатуре: gzip 1F 8B (bgzip - с полем BC), zstd 28 B5 2F FD, xz FD 37 7A 58 5A 00.
+     */
+    public static Format detect(File file) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int length = 0;
+        try (InputStream input = new FileInputStream(file)) {
+            int read;
+            while (length < header.length && (read = input.read(header, length, header.length - length)) > 0) {
+                length += read;
+            }
+        }
+        if (length >= 2 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B) {
+            return blockSize(header, length) > 0 ? Format.BGZIP : Format.GZIP;
+        }
+        if (length >= 4 && (header[0] & 0xFF) == 0x28 && (header[1] & 0xFF) == 0xB5
+                && (header[2] & 0xFF) == 0x2F && (header[3] & 0xFF) == 0xFD) {
+            return Format.ZSTD;
+        }
+        if (length >= 6 && (header[0] & 0xFF) == 0xFD && header[1] == '7' && header[2] == 'z'
+                && header[3] == 'X' && header[4] == 'Z' && header[5] == 0) {
+            return Format.XZ;
+        }
+        return Format.PLAIN;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * @return количество прочитанных байтов сжатого файла, для отображения прогресса; для bgzip и кадров zstd - до конца отданных частей
+     */
+    public long getCompressedBytesRead() {
+        return progress.position();
+    }
+
+    /**
+     * Размер части bgzip по заголовку: поле BC стоит первым в дополнительных полях, как его пишут bgzip и htslib.
+     *
+     * @return размер части в байтах или -1, если заголовок не является заголовком части bgzip
+     */
+    private static int blockSize(byte[] header, int length) {
+        if (length < HEADER_SIZE || (header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B || header[2] != 8
+                || (header[3] & GZIP_FLAG_EXTRA) == 0) {
+            return -1;
+        }
+        int extraLength = unsignedShort(header, 10);
+        if (extraLength < 6 || header[12] != 'B' || header[13] != 'C' || unsignedShort(header, 14) != 2) {
+            return -1;
+        }
+        return unsignedShort(header, 16) + 1;
+    }
+
+    private static int unsignedShort(byte[] bytes, int index) {
+        return (bytes[index] & 0xFF) | (bytes[index + 1] & 0xFF) << 8;
+    }
+
+    private static int intValue(byte[] bytes, int index) {
+        return unsignedShort(bytes, index) | unsignedShort(bytes, index + 2) << 16;
+    }
+
+    private static byte[] read(File file, FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException(file + ": unexpected end of file at offset " + (offset + buffer.position()));
+            }
+        }
+        return buffer.array();
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long position;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            position += skipped;
+            return skipped;
+        }
+
+        long position() {
+            return position;
+        }
+    }
+
+    /**
+     * Разбиение сжатого файла на независимые части, которые можно распаковывать параллельно.
+     */
+    private interface Blocks {
+        /**
+         * @return размер части, начинающейся с offset
+         */
+        int blockSize(FileChannel channel, long offset, long size) throws IOException;
+
+        /**
+         * Распаковывает часть; вызывается в потоках пула.
+         */
+        byte[] decode(byte[] block, long offset) throws IOException;
+    }
+
+    private static final class BgzipBlocks implements Blocks {
+        private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+        private final File file;
+
+        BgzipBlocks(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public int blockSize(FileChannel channel, long offset, long size) throws IOException {
+            byte[] header = read(file, channel, offset, (int) Math.min(HEADER_SIZE, size - offset));
+            int blockSize = CompressedInput.blockSize(header, header.length);
+            if (blockSize < HEADER_SIZE + 8) {
+                throw new IOException(file + ": broken bgzip block at offset " + offset);
+            }
+            return blockSize;
+        }
+
+        @Override
+        public byte[] decode(byte[] block, long offset) throws IOException {
+            int dataStart = 12 + unsignedShort(block, 10);
+            int expectedCrc = intValue(block, block.length - 8);
+            byte[] data = new byte[intValue(block, block.length - 4)];
+            Inflater inflater = INFLATERS.get();
+            inflater.reset();
+            inflater.setInput(block, dataStart, block.length - 8 - dataStart);
+            try {
+                int length = 0;
+                while (length < data.length && !inflater.finished()) {
+                    int inflated = inflater.inflate(data, length, data.length - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    length += inflated;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(data, 0, length);
+                if (length != data.length || (int) crc.getValue() != expectedCrc) {
+                    throw new IOException(file + ": corrupt bgzip block at offset " + offset);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(file + ": corrupt bgzip block at offset " + offset, e);
+            }
+            return data;
+        }
+    }
+
+    /**
+     * Кадры zstd. Размер сжатого кадра в заголовке не записан, поэтому граница кадра находится по заголовкам его блоков
+     * (3 байта на блок до 128 КБ), сами блоки при этом не читаются. Кадр с известным размером данных распаковывается сразу
+     * в массив этого размера, иначе - потоком. Контрольная сумма кадра проверяется при распаковке.
+     * Кадр держится в памяти целиком, поэтому параллельно распаковываются только файлы из нескольких кадров.
+     */
+    private static final class ZstdFrames implements Blocks {
+        private static final ThreadLocal<ZstdDecompressor> DECOMPRESSORS = ThreadLocal.withInitial(ZstdDecompressor::new);
+
+        private final File file;
+        private final boolean severalFrames;
+
+        ZstdFrames(File file) throws IOException {
+            this.file = file;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long size = channel.size();
+                severalFrames = blockSize(channel, 0, size) < size;
+            }
+        }
+
+        boolean hasSeveralFrames() {
+            return severalFrames;
+        }
+
+        @Override
+        public int blockSize(FileChannel channel, long offset, long size) throws IOException {
+            byte[] header = read(file, channel, offset, (int) Math.min(HEADER_SIZE, size - offset));
+            if (header.length < 8) {
+                throw new IOException(file + ": broken zstd frame at offset " + offset);
+            }
+            int magic = intValue(header, 0);
+            if ((magic & ZSTD_SKIPPABLE_MASK) == ZSTD_SKIPPABLE_MAGIC) {
+                return checkedSize(8 + (intValue(header, 4) & 0xFFFFFFFFL), offset, size);
+            }
+            if (magic != ZSTD_MAGIC) {
+                throw new IOException(file + ": broken zstd frame at offset " + offset);
+            }
+            int descriptor = header[4] & 0xFF;
+            boolean singleSegment = (descriptor & 0x20) != 0;
+            int contentSizeFlag = descriptor >>> 6;
+            int dictionaryIdSize = new int[]{0, 1, 2, 4}[descriptor & 3];
+            int contentSizeSize = contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeFlag;
+            long position = offset + 5 + (singleSegment ? 0 : 1) + dictionaryIdSize + contentSizeSize;
+            while (true) {
+                byte[] bytes = read(file, channel, position, ZSTD_BLOCK_HEADER_SIZE);
+                int value = unsignedShort(bytes, 0) | (bytes[2] & 0xFF) << 16;
+                int type = value >>> 1 & 3;
+                if (type == 3) {
+                    throw new IOException(file + ": broken zstd block at offset " + position);
+                }
+                // у блока RLE в заголовке размер распакованных данных, а сжатые данные занимают один байт
+                position += ZSTD_BLOCK_HEADER_SIZE + (type == 1 ? 1 : value >>> 3);
+                if ((value & 1) != 0) {
+                    break;
+                }
+            }
+            if ((descriptor & 4) != 0) {
+                position += ZSTD_CHECKSUM_SIZE;
+            }
+            return checkedSize(position - offset, offset, size);
+        }
+
+        private int checkedSize(long frameSize, long offset, long size) throws IOException {
+            if (offset + frameSize > size || frameSize > Integer.MAX_VALUE) {
+                throw new IOException(file + ": broken zstd frame at offset " + offset);
+            }
+            return (int) frameSize;
+        }
+
+        @Override
+        public byte[] decode(byte[] block, long offset) throws IOException {
+            if ((intValue(block, 0) & ZSTD_SKIPPABLE_MASK) == ZSTD_SKIPPABLE_MAGIC) {
+                return new byte[0];
+            }
+            try {
+                long contentSize = ZstdDecompressor.getDecompressedSize(block, 0, block.length);
+                if (contentSize >= 0 && contentSize <= Integer.MAX_VALUE - 8) {
+                    byte[] data = new byte[(int) contentSize];
+                    int length = DECOMPRESSORS.get().decompress(block, 0, block.length, data, 0, data.length);
+                    if (length != data.length) {
+                        throw new IOException(file + ": corrupt zstd frame at offset " + offset);
+                    }
+                    return data;
+                }
+                ByteArrayOutputStream data = new ByteArrayOutputStream(block.length * 4);
+                try (InputStream input = new ZstdInputStream(new ByteArrayInputStream(block))) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = input.read(buffer)) > 0) {
+                        data.write(buffer, 0, read);
+                    }
+                }
+                return data.toByteArray();
+            } catch (RuntimeException e) {
+                // aircompressor сообщает о повреждённых данных исключением MalformedInputException
+                throw new IOException(file + ": corrupt zstd frame at offset " + offset, e);
+            }
+        }
+    }
+
+    /**
+     * Части читаются из файла по порядку, распаковываются заранее в пуле и отдаются по очереди.
+     */
+    private static final class BlockInputStream extends InputStream {
+        private final File file;
+        private final FileChannel channel;
+        private final long size;
+        private final ForkJoinPool pool;
+        private final Blocks blocks;
+        private final int maxPending;
+        private final ArrayDeque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+        private final ArrayDeque<Long> pendingEnds = new ArrayDeque<>();
+        private long nextBlock;
+        private long position;
+        private byte[] current = new byte[0];
+        private int index;
+
+        BlockInputStream(File file, ForkJoinPool pool, Blocks blocks) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            this.size = channel.size();
+            this.pool = pool;
+            this.blocks = blocks;
+            this.maxPending = Math.max(2, pool.getParallelism() * BLOCKS_PER_THREAD);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureData()) {
+                return -1;
+            }
+            return current[index++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureData()) {
+                return -1;
+            }
+            int count = Math.min(len, current.length - index);
+            System.arraycopy(current, index, b, off, count);
+            index += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return current.length - index;
+        }
+
+        @Override
+        public void close() throws IOException {
+            pending.forEach(task -> task.cancel(false));
+            pending.clear();
+            channel.close();
+        }
+
+        long position() {
+            return position;
+        }
+
+        private boolean ensureData() throws IOException {
+            while (index == current.length) {
+                submitBlocks();
+                ForkJoinTask<byte[]> task = pending.poll();
+                if (task == null) {
+                    return false;
+                }
+                try {
+                    current = task.join();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                index = 0;
+                position = pendingEnds.poll();
+            }
+            return true;
+        }
+
+        private void submitBlocks() throws IOException {
+            while (pending.size() < maxPending && nextBlock < size) {
+                long offset = nextBlock;
+                int blockSize = blocks.blockSize(channel, offset, size);
+                if (offset + blockSize > size) {
+                    throw new IOException(file + ": block at offset " + offset + " is truncated");
+                }
+                byte[] block = CompressedInput.read(file, channel, offset, blockSize);
+                pending.add(pool.submit(() -> {
+                    try {
+                        return blocks.decode(block, offset);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+                nextBlock += blockSize;
+                pendingEnds.add(nextBlock);
+            }
+        }
+    }
+}
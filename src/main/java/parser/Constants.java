@@ -13,6 +13,9 @@ public class Constants {
     public static final String RMC_STR = "RMC";
     public static final String VTG_STR = "VTG";
     public static final String GLL_STR = "GLL";
+
+    public static final double WGS84az = 6378137.00;
+    public static final double WGS84e1 = 0.081819199;
     
     
 }
@@ -0,0 +1,178 @@
+package parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Запись числовых CSV-файлов без промежуточных строк.
+ * Числа форматируются с фиксированным количеством знаков после запятой прямо в байтовый буфер,
+ * который записывается в {@link FileChannel} блоками по {@link #BUFFER_SIZE} байт.
+ * Строки разделяются CRLF; текстовые значения должны быть в ASCII и не требовать экранирования.
+ */
+public class CsvWriter implements Closeable {
+
+    /**
+     * Знаков после запятой для координат в градусах (около 0,1 мм).
+     */
+    public static final int DEGREES = 9;
+    /**
+     * Знаков после запятой для значений в метрах.
+     */
+    public static final int METERS = 4;
+    /**
+     * Знаков после запятой для DOP.
+     */
+    public static final int DOP = 2;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_NUMBER_LENGTH = 32;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final FileChannel channel;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+    private final byte delimiter;
+    private int position;
+    private boolean rowStarted;
+
+    public CsvWriter(File file) throws IOException {
+        this(file, ',');
+    }
+
+    public CsvWriter(File file, char delimiter) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.delimiter = (byte) delimiter;
+    }
+
+    public CsvWriter header(String... names) throws IOException {
+        for (String name : names) {
+            field(name);
+        }
+        return endRow();
+    }
+
+    /**
+     * Число с фиксированным количеством знаков после запятой; NaN и бесконечности записываются как в {@link Double#toString}.
+     */
+    public CsvWriter field(double value, int decimals) throws IOException {
+        startField();
+        double abs = Math.abs(value);
+        if (Double.isNaN(value) || Double.isInfinite(value) || abs >= Long.MAX_VALUE / POWERS_OF_TEN[decimals]) {
+            return ascii(Double.toString(value));
+        }
+        ensure(MAX_NUMBER_LENGTH + decimals);
+        long scale = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(abs * scale);
+        if (value < 0 && scaled != 0) {
+            buffer[position++] = '-';
+        }
+        putDigits(scaled / scale);
+        if (decimals > 0) {
+            buffer[position] = '.';
+            long fraction = scaled % scale;
+            for (int i = decimals; i > 0; i--) {
+                buffer[position + i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            position += decimals + 1;
+        }
+        return this;
+    }
+
+    public CsvWriter field(long value) throws IOException {
+        startField();
+        if (value == Long.MIN_VALUE) {
+            return ascii(Long.toString(value));
+        }
+        ensure(MAX_NUMBER_LENGTH);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        putDigits(value);
+        return this;
+    }
+
+    public CsvWriter field(CharSequence value) throws IOException {
+        startField();
+        return ascii(value);
+    }
+
+    /**
+     * Пустое значение.
+     */
+    public CsvWriter empty() throws IOException {
+        startField();
+        return this;
+    }
+
+    public CsvWriter endRow() throws IOException {
+        ensure(2);
+        buffer[position++] = '\r';
+        buffer[position++] = '\n';
+        rowStarted = false;
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void startField() throws IOException {
+        if (rowStarted) {
+            ensure(1);
+            buffer[position++] = delimiter;
+        }
+        rowStarted = true;
+    }
+
+    private CsvWriter ascii(CharSequence value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            ensure(1);
+            buffer[position++] = (byte) value.charAt(i);
+        }
+        return this;
+    }
+
+    private void putDigits(long value) {
+        int length = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            length++;
+        }
+        for (int i = position + length - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += length;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (position + length > buffer.length) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        byteBuffer.clear().limit(position);
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+        position = 0;
+    }
+}
@@ -0,0 +1,117 @@
+package parser;
+
+import static parser.NmeaTokenizer.NO_VALUE;
+import static parser.NmeaTokenizer.parseTimeMillis;
+
+/**
+ * Деление строк NMEA на эпохи по времени UTC. Предложения со временем (GGA, RMC, GLL, ZDA, GNS, GST) относятся к эпохе
+ * с этим временем, предложения без времени (GSA, GSV, VTG и другие) - к текущей эпохе. Новая эпоха начинается предложением,
+ * время которого отличается от времени текущей, независимо от источника (GN, GP, GL, GA, GB) и порядка предложений.
+ * GGA без времени (нет решения) всегда начинает новую эпоху, как раньше.
+ * Состояние зависит только от последнего предложения со временем, поэтому деление за один проход
+ * совпадает при чтении файла целиком и по частям, начинающимся с начала эпохи.
+ */
+final class EpochBoundary {
+
+    /**
+     * Строка не содержит времени эпохи.
+     */
+    static final int NOT_TIMED = NO_VALUE;
+    /**
+     * Строка GGA без времени.
+     */
+    static final int NO_TIME = -2;
+
+    private boolean open;
+    private int time = NO_VALUE;
+
+    private EpochBoundary(boolean open) {
+        this.open = open;
+    }
+
+    /**
+     * Состояние в начале файла или части файла, начинающейся с начала эпохи: эпоха ещё не начата,
+     * первое предложение со временем начинает эпоху.
+     */
+    static EpochBoundary atStart() {
+        return new EpochBoundary(false);
+    }
+
+    /**
+     * Состояние в произвольном месте файла: время текущей эпохи неизвестно, поэтому первое предложение со временем
+     * только устанавливает его. Все найденные после этого начала эпох совпадают с делением файла целиком.
+     */
+    static EpochBoundary inside() {
+        return new EpochBoundary(true);
+    }
+
+    /**
+     * Учитывает строку, прошедшую проверку {@link ValidationPolicy}.
+     *
+     * @return true, если строка начинает новую эпоху
+     */
+    boolean startsEpoch(CharSequence line) {
+        return startsEpoch(epochTime(line));
+    }
+
+    /**
+     * @param lineTime результат {@link #epochTime(CharSequence)} для строки
+     */
+    boolean startsEpoch(int lineTime) {
+        if (lineTime == NOT_TIMED) {
+            return false;
+        }
+        boolean starts = !open || lineTime == NO_TIME || time != NO_VALUE && lineTime != time;
+        if (starts) {
+            open = true;
+            time = lineTime == NO_TIME ? NO_VALUE : lineTime;
+        } else if (time == NO_VALUE) {
+            time = lineTime;
+        }
+        return starts;
+    }
+
+    /**
+     * @return true, если тип предложения может содержать время эпохи; проверяются только символы заголовка
+     */
+    static boolean isTimedSentence(char first, char type0, char type1, char type2) {
+        return timeField(first, type0, type1, type2) != NO_VALUE;
+    }
+
+    /**
+     * @return время строки в миллисекундах с начала суток, {@link #NO_TIME} для GGA без времени или {@link #NOT_TIMED}
+     */
+    static int epochTime(CharSequence line) {
+        if (line.length() < 6) {
+            return NOT_TIMED;
+        }
+        int field = timeField(line.charAt(0), line.charAt(3), line.charAt(4), line.charAt(5));
+        if (field == NO_VALUE) {
+            return NOT_TIMED;
+        }
+        int millis = parseTimeMillis(line, field);
+        if (millis == NO_VALUE) {
+            return line.charAt(3) == 'G' && line.charAt(4) == 'G' ? NO_TIME : NOT_TIMED;
+        }
+        return millis;
+    }
+
+    private static int timeField(char first, char type0, char type1, char type2) {
+        if (first != '$') {
+            return NO_VALUE;
+        }
+        if (type0 == 'G') {
+            if (type1 == 'G' && type2 == 'A' || type1 == 'N' && type2 == 'S' || type1 == 'S' && type2 == 'T') {
+                return 1;
+            }
+            if (type1 == 'L' && type2 == 'L') {
+                return 5;
+            }
+            return NO_VALUE;
+        }
+        if (type0 == 'R' && type1 == 'M' && type2 == 'C' || type0 == 'Z' && type1 == 'D' && type2 == 'A') {
+            return 1;
+        }
+        return NO_VALUE;
+    }
+}
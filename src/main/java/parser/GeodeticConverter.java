@@ -0,0 +1,140 @@
+package parser;
+
+import static parser.Constants.WGS84az;
+import static parser.Constants.WGS84e1;
+
+/**
+ * Пересчёт геодезических координат эллипсоида WGS84 в геоцентрические (ECEF) и локальные (ENU) координаты.
+ * Константы эллипсоида вычисляются один раз, синусы и косинусы каждой точки считаются однократно,
+ * пакетные методы пишут результат в переданные массивы без создания объектов.
+ */
+public final class GeodeticConverter {
+
+    private static final double E2 = WGS84e1 * WGS84e1;
+    private static final double ONE_MINUS_E2 = 1 - E2;
+
+    private GeodeticConverter() {
+    }
+
+    /**
+     * ECEF-координаты точки, записываются в x[index], y[index], z[index].
+     * Широта и долгота передаются в том же виде, что и в {@link PacketParser#getConvertedDTO}, без перевода единиц.
+     */
+    public static void toEcef(double latitude, double longitude, double altitude, double[] x, double[] y, double[] z, int index) {
+        double sinLat = Math.sin(latitude);
+        double n = primeVerticalRadius(sinLat);
+        double r = (n + altitude) * Math.cos(latitude);
+        x[index] = r * Math.cos(longitude);
+        y[index] = r * Math.sin(longitude);
+        z[index] = (n * ONE_MINUS_E2 + altitude) * sinLat;
+    }
+
+    /**
+     * @param out массив из трёх элементов для значений x, y, z
+     */
+    public static void toEcef(double latitude, double longitude, double altitude, double[] out) {
+        double sinLat = Math.sin(latitude);
+        double n = primeVerticalRadius(sinLat);
+        double r = (n + altitude) * Math.cos(latitude);
+        out[0] = r * Math.cos(longitude);
+        out[1] = r * Math.sin(longitude);
+        out[2] = (n * ONE_MINUS_E2 + altitude) * sinLat;
+    }
+
+    public static void toEcef(double[] latitude, double[] longitude, double[] altitude, int count, double[] x, double[] y, double[] z) {
+        for (int i = 0; i < count; i++) {
+            toEcef(latitude[i], longitude[i], altitude[i], x, y, z, i);
+        }
+    }
+
+    /**
+     * Локальные координаты восток/север/верх в метрах относительно опорной точки.
+     * Широта и долгота точек и опорной точки - в градусах, высота - в метрах.
+     */
+    public static void toEnu(double[] latitude, double[] longitude, double[] altitude, int count,
+                             double refLatitude, double refLongitude, double refAltitude,
+                             double[] east, double[] north, double[] up) {
+        Reference reference = new Reference(refLatitude, refLongitude, refAltitude);
+        double[] point = new double[3];
+        for (int i = 0; i < count; i++) {
+            reference.toEnu(latitude[i], longitude[i], altitude[i], point);
+            east[i] = point[0];
+            north[i] = point[1];
+            up[i] = point[2];
+        }
+    }
+
+    /**
+     * Смещение точки в метрах восток/север/верх в локальной системе опорной точки, для пар точек, у которых опорная точка каждый раз своя.
+     * Объект {@link Reference} не создаётся, ECEF-координаты считаются в системе, повёрнутой на долготу опорной точки,
+     * поэтому синус и косинус долготы берутся один раз от разности долгот. Широта и долгота - в градусах, высота - в метрах.
+     *
+     * @param out массив из трёх элементов для значений восток, север, верх
+     */
+    public static void toEnu(double refLatitude, double refLongitude, double refAltitude,
+                             double latitude, double longitude, double altitude, double[] out) {
+        double refLat = Math.toRadians(refLatitude);
+        double sinRefLat = Math.sin(refLat);
+        double cosRefLat = Math.cos(refLat);
+        double lat = Math.toRadians(latitude);
+        double sinLat = Math.sin(lat);
+        double cosLat = Math.cos(lat);
+        double dLon = Math.toRadians(longitude - refLongitude);
+        double refN = primeVerticalRadius(sinRefLat);
+        double n = primeVerticalRadius(sinLat);
+        double r = (n + altitude) * cosLat;
+        double dx = r * Math.cos(dLon) - (refN + refAltitude) * cosRefLat;
+        double dz = (n * ONE_MINUS_E2 + altitude) * sinLat - (refN * ONE_MINUS_E2 + refAltitude) * sinRefLat;
+        out[0] = r * Math.sin(dLon);
+        out[1] = -sinRefLat * dx + cosRefLat * dz;
+        out[2] = cosRefLat * dx + sinRefLat * dz;
+    }
+
+    private static double primeVerticalRadius(double sinLat) {
+        return WGS84az / Math.sqrt(1 - E2 * (sinLat * sinLat));
+    }
+
+    /**
+     * Опорная точка локальной системы ENU с заранее вычисленными ECEF-координатами и матрицей поворота.
+     */
+    public static final class Reference {
+
+        private final double x0;
+        private final double y0;
+        private final double z0;
+        private final double sinLat;
+        private final double cosLat;
+        private final double sinLon;
+        private final double cosLon;
+
+        public Reference(double latitude, double longitude, double altitude) {
+            double lat = Math.toRadians(latitude);
+            double lon = Math.toRadians(longitude);
+            sinLat = Math.sin(lat);
+            cosLat = Math.cos(lat);
+            sinLon = Math.sin(lon);
+            cosLon = Math.cos(lon);
+            double n = primeVerticalRadius(sinLat);
+            x0 = (n + altitude) * cosLat * cosLon;
+            y0 = (n + altitude) * cosLat * sinLon;
+            z0 = (n * ONE_MINUS_E2 + altitude) * sinLat;
+        }
+
+        /**
+         * @param out массив из трёх элементов для значений восток, север, верх
+         */
+        public void toEnu(double latitude, double longitude, double altitude, double[] out) {
+            double lat = Math.toRadians(latitude);
+            double lon = Math.toRadians(longitude);
+            double sinPointLat = Math.sin(lat);
+            double cosPointLat = Math.cos(lat);
+            double n = primeVerticalRadius(sinPointLat);
+            double dx = (n + altitude) * cosPointLat * Math.cos(lon) - x0;
+            double dy = (n + altitude) * cosPointLat * Math.sin(lon) - y0;
+            double dz = (n * ONE_MINUS_E2 + altitude) * sinPointLat - z0;
+            out[0] = -sinLon * dx + cosLon * dy;
+            out[1] = -sinLat * cosLon * dx - sinLat * sinLon * dy + cosLat * dz;
+            out[2] = cosLat * cosLon * dx + cosLat * sinLon * dy + sinLat * dz;
+        }
+    }
+}
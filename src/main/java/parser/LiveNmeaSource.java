@@ -0,0 +1,325 @@
+package parser;
+
+import parser.data.Record;
+import parser.data.RecordRingBuffer;
+import parser.data.RecordSource;
+
+import java.io.*;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение NMEA в реальном времени из TCP-сокета, UDP-датаграмм, последовательного порта (в том числе pty)
+ * или дописываемого файла журнала ({@link #follow(File, long, int)}). Строки читаются в отдельном потоке, собираются в записи {@link RecordAssembler} и складываются в {@link RecordRingBuffer},
+ * откуда их забирает интерфейс. Скорость последовательного порта настраивается заранее средствами ОС (например, stty).
+ */
+public class LiveNmeaSource implements Closeable {
+
+    private static final String TCP_PREFIX = "tcp://";
+    private static final String UDP_PREFIX = "udp://";
+    private static final int DATAGRAM_SIZE = 65535;
+    private static final int FILE_BUFFER_SIZE = 1 << 16;
+    /**
+     * Наибольшее время ожидания изменения файла; проверка по таймеру нужна, если уведомления файловой системы не приходят
+     * (сетевые диски, реализации {@link WatchService} с опросом).
+     */
+    private static final long FILE_POLL_MILLIS = 500;
+
+    private enum Type {
+        TCP,
+        UDP,
+        DEVICE,
+        FILE
+    }
+
+    private final Type type;
+    private final String host;
+    private final int port;
+    private final File device;
+    private final long offset;
+    private final int firstNumber;
+
+    private volatile boolean closed;
+    /**
+     * Чтение завершилось: источник закрыл соединение или устройство вернуло конец файла.
+     */
+    private volatile boolean finished;
+    private volatile boolean truncated;
+    private volatile Closeable connection;
+    private volatile IOException error;
+
+    private LiveNmeaSource(Type type, String host, int port, File device) {
+        this(type, host, port, device, 0, 1);
+    }
+
+    private LiveNmeaSource(Type type, String host, int port, File device, long offset, int firstNumber) {
+        this.type = type;
+        this.host = host;
+        this.port = port;
+        this.device = device;
+        this.offset = offset;
+        this.firstNumber = firstNumber;
+    }
+
+    public static LiveNmeaSource tcp(String host, int port) {
+        return new LiveNmeaSource(Type.TCP, host, port, null);
+    }
+
+    /**
+     * Приём датаграмм на указанный порт всех интерфейсов, в датаграмме может быть несколько строк.
+     */
+    public static LiveNmeaSource udp(int port) {
+        return new LiveNmeaSource(Type.UDP, null, port, null);
+    }
+
+    public static LiveNmeaSource device(File device) {
+        return new LiveNmeaSource(Type.DEVICE, null, -1, device);
+    }
+
+    /**
+     * Слежение за файлом, который дописывает регистратор: читаются только байты, добавленные после offset.
+     * Незаконченная строка и незавершённая эпоха хранятся между чтениями, поэтому затраты пропорциональны новым данным.
+     * Записи хранят положение в файле ({@link RecordSource}). Если файл стал короче (перезаписан), прочитанные записи
+     * больше не соответствуют файлу, поэтому слежение останавливается ({@link #isTruncated()}) и файл нужно прочитать заново.
+     *
+     * @param offset      смещение начала эпохи, с которой продолжается чтение (например, начало последней прочитанной записи)
+     * @param firstNumber номер, который получит запись, начинающаяся с offset
+     */
+    public static LiveNmeaSource follow(File file, long offset, int firstNumber) {
+        return new LiveNmeaSource(Type.FILE, null, -1, file, offset, firstNumber);
+    }
+
+    /**
+     * @param address tcp://хост:порт, udp://порт, путь к устройству (/dev/ttyUSB0, /dev/pts/3, COM3)
+     *                или к обычному файлу, за которым нужно следить с начала
+     */
+    public static LiveNmeaSource of(String address) {
+        if (address.startsWith(TCP_PREFIX)) {
+            String hostPort = address.substring(TCP_PREFIX.length());
+            int colon = hostPort.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Port is not specified: " + address);
+            }
+            return tcp(hostPort.substring(0, colon), Integer.parseInt(hostPort.substring(colon + 1)));
+        }
+        if (address.startsWith(UDP_PREFIX)) {
+            String port = address.substring(UDP_PREFIX.length());
+            return udp(Integer.parseInt(port.substring(port.lastIndexOf(':') + 1)));
+        }
+        File file = new File(address);
+        return file.isFile() ? follow(file, 0, 1) : device(file);
+    }
+
+    /**
+     * Запускает чтение в фоновом потоке.
+     *
+     * @param buffer буфер, в который складываются собранные записи
+     */
+    public void start(RecordRingBuffer buffer) {
+        Thread thread = new Thread(() -> read(buffer), "nmea-live-" + type.name().toLowerCase());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isRunning() {
+        return !closed && !finished && error == null;
+    }
+
+    /**
+     * @return true, если слежение за файлом остановлено, потому что файл стал короче
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return ошибка, на которой остановилось чтение, или null, если чтение остановлено или источник закрыл соединение
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Closeable current = connection;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private void read(RecordRingBuffer buffer) {
+        RecordAssembler assembler = type == Type.FILE
+                ? new RecordAssembler(firstNumber, new RecordSource(device)) : new RecordAssembler();
+        try {
+            if (type == Type.UDP) {
+                readDatagrams(assembler, buffer);
+            } else if (type == Type.FILE) {
+                followFile(assembler, buffer);
+            } else {
+                readLines(assembler, buffer);
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                error = e;
+                System.out.println("Error occurred during live NMEA reading: " + e.getMessage());
+            }
+        } finally {
+            if (type != Type.FILE) {
+                // при слежении за файлом запись завершается в followFile со смещением конца
+                offer(assembler.finish(), buffer);
+            }
+            finished = true;
+        }
+    }
+
+    private void readLines(RecordAssembler assembler, RecordRingBuffer buffer) throws IOException {
+        InputStream input;
+        if (type == Type.TCP) {
+            Socket socket = new Socket();
+            connection = socket;
+            if (closed) {
+                socket.close();
+                return;
+            }
+            socket.connect(new InetSocketAddress(host, port));
+            input = socket.getInputStream();
+        } else {
+            input = new FileInputStream(device);
+            connection = input;
+        }
+        if (closed) {
+            connection.close();
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.ISO_8859_1))) {
+            String line;
+            while (!closed && (line = reader.readLine()) != null) {
+                accept(assembler, buffer, line);
+            }
+        }
+    }
+
+    private void readDatagrams(RecordAssembler assembler, RecordRingBuffer buffer) throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(port)) {
+            connection = socket;
+            if (closed) {
+                return;
+            }
+            byte[] data = new byte[DATAGRAM_SIZE];
+            DatagramPacket packet = new DatagramPacket(data, data.length);
+            while (!closed) {
+                packet.setLength(data.length);
+                socket.receive(packet);
+                int start = 0;
+                int end = packet.getLength();
+                for (int i = 0; i <= end; i++) {
+                    if (i == end || data[i] == '\n' || data[i] == '\r') {
+                        if (i > start) {
+                            accept(assembler, buffer, new String(data, start, i - start, StandardCharsets.ISO_8859_1));
+                        }
+                        start = i + 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Читает файл с offset и ждёт его изменения. Смещение строки считается так же, как при разборе файла целиком,
+     * чтобы записи читали свои строки из файла по смещению.
+     */
+    private void followFile(RecordAssembler assembler, RecordRingBuffer buffer) throws IOException {
+        Path path = device.toPath().toAbsolutePath();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             WatchService watcher = path.getFileSystem().newWatchService()) {
+            connection = watcher;
+            if (closed) {
+                return;
+            }
+            path.getParent().register(watcher, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+            ByteBuffer bytes = ByteBuffer.allocate(FILE_BUFFER_SIZE);
+            StringBuilder line = new StringBuilder();
+            long position = offset;
+            long lineStart = offset;
+            while (!closed) {
+                if (channel.size() < position) {
+                    // незавершённая запись тоже не отдаётся: её строки могли быть перезаписаны
+                    System.out.println("Followed file was truncated, stopping: " + device);
+                    truncated = true;
+                    return;
+                }
+                bytes.clear();
+                int read = channel.read(bytes, position);
+                if (read <= 0) {
+                    if (!awaitChange(watcher)) {
+                        break;
+                    }
+                    continue;
+                }
+                for (int i = 0; i < read; i++) {
+                    byte b = bytes.get(i);
+                    if (b == '\n' || b == '\r') {
+                        offer(assembler.accept(line.toString(), lineStart), buffer);
+                        line.setLength(0);
+                        lineStart = position + i + 1;
+                    } else {
+                        line.append((char) (b & 0xFF));
+                    }
+                }
+                position += read;
+            }
+            // незаконченная строка не учитывается: при следующем слежении она будет прочитана целиком
+            offer(assembler.finish(lineStart), buffer);
+        }
+    }
+
+    /**
+     * Ждёт изменения в каталоге файла, но не дольше {@link #FILE_POLL_MILLIS}.
+     *
+     * @return false, если слежение остановлено
+     */
+    private boolean awaitChange(WatchService watcher) throws IOException {
+        try {
+            WatchKey key = watcher.poll(FILE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                key.pollEvents();
+                key.reset();
+            }
+            return true;
+        } catch (ClosedWatchServiceException e) {
+            if (!closed) {
+                throw new IOException("File watcher was closed", e);
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void offer(Record record, RecordRingBuffer buffer) {
+        if (record != null) {
+            buffer.offer(record);
+        }
+    }
+
+    private static void accept(RecordAssembler assembler, RecordRingBuffer buffer, String line) {
+        Record record = assembler.accept(line.trim());
+        if (record != null) {
+            buffer.offer(record);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package parser;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TCP-сервер, воспроизводящий NMEA-файл с заданной частотой записей, для проверки режима чтения в реальном времени.
+ * Подключившийся клиент получает записи файла по кругу, пока не отключится.
+ * <pre>
+ * java -cp nmea-gui.jar parser.NmeaReplayServer small.txt 10110 1
+ * </pre>
+ * после чего в интерфейсе указывается адрес tcp://localhost:10110.
+ */
+public class NmeaReplayServer {
+
+    private static final int DEFAULT_PORT = 10110;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: NmeaReplayServer <nmea file> [port] [records per second]");
+            return;
+        }
+        File nmeaFile = new File(args[0]);
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        double rate = args.length > 2 ? Double.parseDouble(args[2]) : 1;
+        long delayMillis = (long) (1000 / rate);
+        try (ServerSocket server = new ServerSocket(port)) {
+            System.out.println("Replaying " + nmeaFile + " on port " + port);
+            while (true) {
+                try (Socket client = server.accept()) {
+                    System.out.println("Client connected: " + client.getRemoteSocketAddress());
+                    replay(nmeaFile, client.getOutputStream(), delayMillis);
+                } catch (IOException e) {
+                    System.out.println("Client disconnected: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void replay(File nmeaFile, OutputStream output, long delayMillis) throws IOException, InterruptedException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.ISO_8859_1));
+        while (true) {
+            try (RecordIterator iterator = new RecordIterator(nmeaFile)) {
+                while (iterator.hasNext()) {
+                    for (String line : iterator.next().getLines()) {
+                        writer.write(line);
+                        writer.write("\r\n");
+                    }
+                    writer.flush();
+                    Thread.sleep(delayMillis);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package parser;
+
+import net.sf.marineapi.nmea.sentence.SentenceId;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Быстрый разбор полей NMEA-предложений без создания объектов {@link net.sf.marineapi.nmea.sentence.Sentence}.
+ * Все методы работают напрямую с символами строки и не выделяют память под промежуточные строки.
+ * Нулевое поле - адрес предложения (например, "$GNGGA"), далее поля нумеруются по запятым.
+ * Отсутствующие или некорректные значения возвращаются как {@link Double#NaN} / {@link #NO_VALUE}.
+ */
+public final class NmeaTokenizer {
+
+    public static final int NO_VALUE = -1;
+
+    private static final int MAX_FAST_DIGITS = 15;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private NmeaTokenizer() {
+    }
+
+    /**
+     * Проверяет тип предложения по трём символам после идентификатора источника ("$GNGGA" -> "GGA").
+     */
+    public static boolean isSentence(CharSequence line, String sentenceId) {
+        if (line.length() < 6 || (line.charAt(0) != '$' && line.charAt(0) != '!')) {
+            return false;
+        }
+        return line.charAt(3) == sentenceId.charAt(0)
+                && line.charAt(4) == sentenceId.charAt(1)
+                && line.charAt(5) == sentenceId.charAt(2);
+    }
+
+    /**
+     * Определяет тип предложения без создания строк.
+     *
+     * @return тип предложения или null для типов, которые не используются приложением
+     */
+    @Nullable
+    public static SentenceId sentenceId(CharSequence line) {
+        if (line.length() < 6 || (line.charAt(0) != '$' && line.charAt(0) != '!')) {
+            return null;
+        }
+        char first = line.charAt(3);
+        char second = line.charAt(4);
+        char third = line.charAt(5);
+        switch (first) {
+            case 'G':
+                if (second == 'G' && third == 'A') {
+                    return SentenceId.GGA;
+                }
+                if (second == 'S' && third == 'A') {
+                    return SentenceId.GSA;
+                }
+                if (second == 'S' && third == 'V') {
+                    return SentenceId.GSV;
+                }
+                if (second == 'L' && third == 'L') {
+                    return SentenceId.GLL;
+                }
+                return null;
+            case 'Z':
+                return second == 'D' && third == 'A' ? SentenceId.ZDA : null;
+            case 'R':
+                return second == 'M' && third == 'C' ? SentenceId.RMC : null;
+            case 'V':
+                return second == 'T' && third == 'G' ? SentenceId.VTG : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return индекс первого символа поля с номером field или {@link #NO_VALUE}, если поля нет в строке
+     */
+    public static int fieldStart(CharSequence line, int field) {
+        int length = line.length();
+        int index = 0;
+        for (int i = 0; i < field; i++) {
+            while (index < length && line.charAt(index) != ',') {
+                if (line.charAt(index) == '*') {
+                    return NO_VALUE;
+                }
+                index++;
+            }
+            if (index == length) {
+                return NO_VALUE;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * @return индекс символа, следующего за последним символом поля, начинающегося с позиции start
+     */
+    public static int fieldEnd(CharSequence line, int start) {
+        int length = line.length();
+        int index = start;
+        while (index < length) {
+            char c = line.charAt(index);
+            if (c == ',' || c == '*') {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    public static double parseDouble(CharSequence line, int field) {
+        int start = fieldStart(line, field);
+        if (start == NO_VALUE) {
+            return Double.NaN;
+        }
+        return parseDouble(line, start, fieldEnd(line, start));
+    }
+
+    public static int parseInt(CharSequence line, int field) {
+        int start = fieldStart(line, field);
+        if (start == NO_VALUE) {
+            return NO_VALUE;
+        }
+        return parseInt(line, start, fieldEnd(line, start));
+    }
+
+    public static char parseChar(CharSequence line, int field) {
+        int start = fieldStart(line, field);
+        if (start == NO_VALUE || start == fieldEnd(line, start)) {
+            return 0;
+        }
+        return line.charAt(start);
+    }
+
+    /**
+     * Разбирает десятичное число без экспоненты. Для чисел, помещающихся в 15 значащих цифр,
+     * результат совпадает с {@link Double#parseDouble(String)}.
+     */
+    public static double parseDouble(CharSequence line, int start, int end) {
+        if (start >= end) {
+            return Double.NaN;
+        }
+        int index = start;
+        boolean negative = false;
+        char first = line.charAt(index);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            index++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean dot = false;
+        for (; index < end; index++) {
+            char c = line.charAt(index);
+            if (c == '.' && !dot) {
+                dot = true;
+            } else if (c >= '0' && c <= '9') {
+                if (digits == MAX_FAST_DIGITS) {
+                    return parseDoubleSlow(line, start, end);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (dot) {
+                    fractionDigits++;
+                }
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (fractionDigits >= POWERS_OF_TEN.length) {
+            return parseDoubleSlow(line, start, end);
+        }
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    public static int parseInt(CharSequence line, int start, int end) {
+        if (start >= end) {
+            return NO_VALUE;
+        }
+        int value = 0;
+        for (int index = start; index < end; index++) {
+            char c = line.charAt(index);
+            if (c < '0' || c > '9') {
+                return NO_VALUE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Разбирает координату в формате (d)ddmm.mmmm с полушарием в следующем поле.
+     *
+     * @return значение в градусах со знаком (южные и западные координаты отрицательны)
+     */
+    public static double parseCoordinate(CharSequence line, int field) {
+        int start = fieldStart(line, field);
+        if (start == NO_VALUE) {
+            return Double.NaN;
+        }
+        int end = fieldEnd(line, start);
+        int dot = start;
+        while (dot < end && line.charAt(dot) != '.') {
+            dot++;
+        }
+        int minutesStart = Math.max(start, dot - 2);
+        int degrees = minutesStart == start ? 0 : parseInt(line, start, minutesStart);
+        double minutes = parseDouble(line, minutesStart, end);
+        if (degrees == NO_VALUE || Double.isNaN(minutes) || end + 1 >= line.length() || line.charAt(end) != ',') {
+            return Double.NaN;
+        }
+        double value = degrees + minutes / 60;
+        switch (line.charAt(end + 1)) {
+            case 'N':
+            case 'E':
+                return value;
+            case 'S':
+            case 'W':
+                return -value;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    /**
+     * Разбирает время UTC в формате hhmmss.ss.
+     *
+     * @return количество миллисекунд с начала суток или {@link #NO_VALUE}
+     */
+    public static int parseTimeMillis(CharSequence line, int field) {
+        int start = fieldStart(line, field);
+        if (start == NO_VALUE) {
+            return NO_VALUE;
+        }
+        int end = fieldEnd(line, start);
+        if (end - start < 6) {
+            return NO_VALUE;
+        }
+        int hours = parseInt(line, start, start + 2);
+        int minutes = parseInt(line, start + 2, start + 4);
+        double seconds = parseDouble(line, start + 4, end);
+        if (hours == NO_VALUE || minutes == NO_VALUE || Double.isNaN(seconds)) {
+            return NO_VALUE;
+        }
+        return (hours * 3600 + minutes * 60) * 1000 + (int) Math.round(seconds * 1000);
+    }
+
+    private static double parseDoubleSlow(CharSequence line, int start, int end) {
+        try {
+            return Double.parseDouble(line.subSequence(start, end).toString());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
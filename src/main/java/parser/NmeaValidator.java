@@ -0,0 +1,124 @@
+package parser;
+
+import net.sf.marineapi.nmea.parser.SentenceFactory;
+import net.sf.marineapi.nmea.sentence.TalkerId;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Быстрая проверка строки NMEA до создания каких-либо объектов: контрольная сумма XOR, структура строки,
+ * идентификатор источника и тип предложения. Проверка не выделяет память.
+ */
+public final class NmeaValidator {
+
+    /**
+     * Проблема строки. Проверки выполняются в порядке объявления, возвращается первая найденная.
+     */
+    public enum Problem {
+        /**
+         * Нет начала предложения ('$' или '!') или контрольной суммы "*hh", либо после неё есть лишние символы.
+         */
+        TRUNCATED("обрезанные строки"),
+        BAD_CHECKSUM("неверная контрольная сумма"),
+        UNKNOWN_TALKER("неизвестный источник"),
+        /**
+         * Тип предложения, для которого в marineapi нет парсера (в том числе собственные предложения $P...).
+         */
+        UNSUPPORTED_TYPE("неподдерживаемый тип");
+
+        private final String description;
+
+        Problem(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static final int LETTERS = 26;
+    private static final boolean[] TALKERS = new boolean[LETTERS * LETTERS];
+    private static final boolean[] TYPES = new boolean[LETTERS * LETTERS * LETTERS];
+
+    static {
+        for (TalkerId talkerId : TalkerId.values()) {
+            String name = talkerId.name();
+            if (name.length() == 2) {
+                TALKERS[letter(name.charAt(0)) * LETTERS + letter(name.charAt(1))] = true;
+            }
+        }
+        for (String type : SentenceFactory.getInstance().listParsers()) {
+            if (type.length() == 3 && letter(type.charAt(0)) >= 0 && letter(type.charAt(1)) >= 0 && letter(type.charAt(2)) >= 0) {
+                TYPES[(letter(type.charAt(0)) * LETTERS + letter(type.charAt(1))) * LETTERS + letter(type.charAt(2))] = true;
+            }
+        }
+    }
+
+    private NmeaValidator() {
+    }
+
+    /**
+     * @return первая найденная проблема строки или null для корректной строки
+     */
+    @Nullable
+    public static Problem check(CharSequence line) {
+        int length = line.length();
+        if (length < 6 || (line.charAt(0) != '$' && line.charAt(0) != '!')) {
+            return Problem.TRUNCATED;
+        }
+        int checksum = 0;
+        int star = 1;
+        while (star < length && line.charAt(star) != '*') {
+            checksum ^= line.charAt(star);
+            star++;
+        }
+        if (star + 3 > length) {
+            return Problem.TRUNCATED;
+        }
+        for (int i = star + 3; i < length; i++) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                return Problem.TRUNCATED;
+            }
+        }
+        int high = hex(line.charAt(star + 1));
+        int low = hex(line.charAt(star + 2));
+        if (high < 0 || low < 0) {
+            return Problem.TRUNCATED;
+        }
+        if (checksum != (high << 4 | low)) {
+            return Problem.BAD_CHECKSUM;
+        }
+        if (line.charAt(1) == 'P') {
+            return Problem.UNSUPPORTED_TYPE;
+        }
+        int talker0 = letter(line.charAt(1));
+        int talker1 = letter(line.charAt(2));
+        if (talker0 < 0 || talker1 < 0 || !TALKERS[talker0 * LETTERS + talker1]) {
+            return Problem.UNKNOWN_TALKER;
+        }
+        int type0 = letter(line.charAt(3));
+        int type1 = letter(line.charAt(4));
+        int type2 = letter(line.charAt(5));
+        if (type0 < 0 || type1 < 0 || type2 < 0 || !TYPES[(type0 * LETTERS + type1) * LETTERS + type2]) {
+            return Problem.UNSUPPORTED_TYPE;
+        }
+        return null;
+    }
+
+    private static int letter(char c) {
+        return c >= 'A' && c <= 'Z' ? c - 'A' : -1;
+    }
+
+    private static int hex(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+}
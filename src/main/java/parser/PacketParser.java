@@ -1,32 +1,29 @@
 package parser;
 
-import exception.UnsupportedLineException;
 import net.sf.marineapi.nmea.parser.DataNotAvailableException;
-import net.sf.marineapi.nmea.parser.SentenceFactory;
-import net.sf.marineapi.nmea.parser.UnsupportedSentenceException;
 import net.sf.marineapi.nmea.sentence.*;
 import net.sf.marineapi.nmea.util.DataStatus;
 import net.sf.marineapi.nmea.util.Date;
 import net.sf.marineapi.nmea.util.Position;
 import net.sf.marineapi.nmea.util.Time;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
 import org.jetbrains.annotations.Nullable;
 import parser.data.PositionWithTime;
 import parser.data.Record;
-import parser.sentence.UnknownParser;
+import parser.data.TrackColumns;
 import parser.sentence.UnknownSentence;
 
 import java.io.*;
-import java.math.BigDecimal;
 import java.time.*;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Парсер файлов протокола NMEA.
- * Данный парсер поддерживает входные файлы, разделяемые на записи/пакеты из N предложений, каждое запись начинается с предложения типа GGA;
+ * Данный парсер поддерживает входные файлы, разделяемые на записи/пакеты из N предложений одной эпохи (одного времени UTC, см. {@link EpochBoundary});
  * Парсер позволяет создавать CSV-файлы, содержащий координаты, соответствующие каждой записи.
  */
 public class PacketParser {
@@ -38,7 +35,7 @@ public class PacketParser {
 
     private static final String[] POSITION_CSV_HEADER = {"pos_x", "pos_y"};
     private static final String[] DOP_CSV_HEADER = {"hdop", "vdop", "pdop"};
-    private static final String[] DELTA_CSV_HEADER = {"latitude", "longitude", "time", "lat_m" ,"long_m"};
+    private static final String[] DELTA_CSV_HEADER = {"latitude", "longitude", "time", "lat_m" ,"long_m", "sat_q", "east_m", "north_m", "up_m"};
 
     private static final String GGA_STR = "GGA";
     private static final String GSA_STR = "GSA";
@@ -50,10 +47,6 @@ public class PacketParser {
 
     private static final String UNKNOWN_SENTENCE_TYPE = "Неизвестный тип записи";
 
-    private static final String WHITESPACE_SPLIT_PATTERN = "\\s+";
-
-    private final static double WGS84az=6378137.00;
-    private final static double WGS84e1=0.081819199;
 
     public static class ConvertedDTO {
         private final double longitudeD;
@@ -146,6 +139,13 @@ public class PacketParser {
         public void setDateTime(LocalDateTime dateTime) {
             this.dateTime = dateTime;
         }
+
+        /**
+         * @return количество спутников или -1, если оно неизвестно
+         */
+        public int getSatelliteCount() {
+            return satelliteCount;
+        }
     }
 
     public static class InfoDTO implements PositionWithTime {
@@ -242,11 +242,9 @@ public class PacketParser {
         }
 
         public ConvertedDTO getConvertedDto(){
-            double n = WGS84az/Math.sqrt(1 - Math.pow(WGS84e1,2)*Math.pow(Math.sin(latitude),2));
-            double x = (n+altitude)*Math.cos(latitude)*Math.cos(longitude);
-            double y = (n+altitude)*Math.cos(latitude)*Math.sin(longitude);
-            double z = (n*(1-Math.pow(WGS84e1,2))+altitude)*Math.sin(latitude);
-            return new ConvertedDTO(longitude, latitude, altitude, x,y,z,time);
+            double[] ecef = new double[3];
+            GeodeticConverter.toEcef(latitude, longitude, altitude, ecef);
+            return new ConvertedDTO(longitude, latitude, altitude, ecef[0], ecef[1], ecef[2], time);
         }
     }
 
@@ -484,62 +482,44 @@ public class PacketParser {
                 "Контрольная сумма строки - *hh\n";
     }
 
+    /**
+     * Файл может быть сжат gzip, bgzip или zstd, он распаковывается при чтении ({@link CompressedInput}).
+     */
     public static List<Record> parse(File nmeaFile) throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader(nmeaFile));
-        SentenceFactory sentenceFactory = SentenceFactory.getInstance();
+        return parse(nmeaFile, ValidationPolicy.DEFAULT, new ParseStatistics());
+    }
+
+    /**
+     * @param policy     правило обработки строк с ошибками
+     * @param statistics счётчики, в которые добавляются результаты проверки строк файла
+     */
+    public static List<Record> parse(File nmeaFile, ValidationPolicy policy, ParseStatistics statistics) throws IOException {
         List<Record> records = new ArrayList<>();
-        boolean endOfTheLoop = false;
-        int i = 0;
-        String line;
-        String firstLine = null;
-        while (true) {
-            List<Sentence> sentences = new ArrayList<>();
-            Sentence sentence;
-            boolean packetStarted = false;
-            boolean startOfPacket = true;
-            while (startOfPacket || packetStarted){
-                line = firstLine == null ? reader.readLine() : firstLine;
-                firstLine = null;
-                if (line == null) {
-                    records.add(new Record(sentences, i));
-                    endOfTheLoop = true;
-                    break;
-                }
-                try {
-                    sentence = sentenceFactory.createParser(line);
-                    boolean isGGA = sentence.getSentenceId().equals(GGA_STR);
-                    if (isGGA){
-                        if (packetStarted) {
-                            packetStarted = false;
-                            firstLine = line;
-                            continue;
-                        } else {
-                            packetStarted = true;
-                        }
-                    }
-                    if (!packetStarted){
-                        continue;
-                    }
-                    sentences.add(sentence);
-                    startOfPacket = false;
-                } catch (UnsupportedSentenceException e) {
-                    sentence = new UnknownParser(line);
-                    sentences.add(sentence);
-                }
-            }
-            if (endOfTheLoop) {
-                break;
-            }
-            i++;
-            records.add(new Record(sentences, i));
-        }
-        boolean correctRecords = records.stream().allMatch(x -> x.getSentences().get(0).getSentenceId().equals(GGA_STR));
-        if (!correctRecords) {
-            System.out.println("Incorrect file format");
+        try (RecordIterator iterator = new RecordIterator(CompressedInput.reader(nmeaFile),
+                new RecordAssembler(1, null, policy, statistics))) {
+            iterator.forEachRemaining(records::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
         return records;
     }
 
+    /**
+     * Потоковый вариант {@link #parse(File)}: записи читаются из файла по мере потребления.
+     * Поток необходимо закрыть после использования (например, в try-with-resources).
+     */
+    public static Stream<Record> stream(File nmeaFile) throws IOException {
+        RecordIterator iterator = new RecordIterator(nmeaFile);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        iterator.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
     public static String getSentenceDescription(Sentence sentence) {
         if (sentence instanceof UnknownSentence) {
             return UNKNOWN_SENTENCE_TYPE;
@@ -843,35 +823,40 @@ public class PacketParser {
 
     @Nullable
     public static File createPositionCsv(List<Record> records) {
+        return createPositionCsv(records.stream());
+    }
+
+    @Nullable
+    public static File createPositionCsv(Stream<Record> records) {
         File outputFile = new File(POSITION_FILE_NAME);
-        try (FileWriter output = new FileWriter(outputFile); CSVPrinter printer = new CSVPrinter(output, CSVFormat.DEFAULT.withHeader(POSITION_CSV_HEADER))) {
-            records.forEach(x -> {
-                GGASentence sentence = (GGASentence) x.getSentences().get(0);
-                Position position = null;
-                try {
-                    position = sentence.getPosition();
-                } catch (DataNotAvailableException dataNotAvailableException){
-                    Optional<Sentence> gllOpt = x.getSentences().stream().filter(y -> GLL_STR.equals(y.getSentenceId())).findFirst();
-                    if (gllOpt.isPresent()){
-                        GLLSentence gllSentence = (GLLSentence) gllOpt.get();
-                        try {
-                            position = gllSentence.getPosition();
-                        }  catch (DataNotAvailableException dataNotAvailableExceptionInner){
-                            System.out.println("Couldn't find position for parser.sentence: " + gllSentence.toSentence());
-                        }
-                    }
-                }
-                if (position != null){
-                    InfoDTO infoDTO = new InfoDTO(position.getLatitude(), position.getLongitude(), LocalDateTime.now());
-                    infoDTO.altitude = position.getAltitude();
-                    ConvertedDTO convertedDTO = infoDTO.getConvertedDto();
-                    try {
-                        printer.printRecord(convertedDTO.getLatitudeD(), convertedDTO.getLongitudeD(), convertedDTO.getLatitudeM(), convertedDTO.getLongitudeM());
-                    } catch (IOException e) {
-                        System.out.println("Error occurred during writing line");
-                    }
-                }
-            });
+        try (CsvWriter writer = new CsvWriter(outputFile)) {
+            writer.header(POSITION_CSV_HEADER);
+            double[] ecef = new double[3];
+            for (Iterator<Record> iterator = records.filter(Record::hasPosition).iterator(); iterator.hasNext(); ) {
+                Record x = iterator.next();
+                GeodeticConverter.toEcef(x.getLatitude(), x.getLongitude(), Double.isNaN(x.getAltitude()) ? 0 : x.getAltitude(), ecef);
+                writePosition(writer, x.getLatitude(), x.getLongitude(), ecef[1], ecef[0]);
+            }
+            return outputFile;
+        } catch (IOException e) {
+            System.out.println("Error occurred during output file creation");
+            return null;
+        }
+    }
+
+    @Nullable
+    public static File createPositionCsv(TrackColumns track) {
+        return createPositionCsv(track, null);
+    }
+
+    @Nullable
+    public static File createPositionCsv(TrackColumns track, @Nullable String path) {
+        File outputFile = new File(path == null ? POSITION_FILE_NAME : path);
+        try (CsvWriter writer = new CsvWriter(outputFile)) {
+            writer.header(POSITION_CSV_HEADER);
+            for (int i = 0; i < track.size(); i++) {
+                writePosition(writer, track.getLatitude(i), track.getLongitude(i), track.getY(i), track.getX(i));
+            }
             return outputFile;
         } catch (IOException e) {
             System.out.println("Error occurred during output file creation");
@@ -882,15 +867,13 @@ public class PacketParser {
     @Nullable
     public static File createActualPositionCsv(List<InertialDTO> inertialDTOS) {
         File outputFile = new File(ACTUAl_POSITION_FILE_NAME);
-        List<ConvertedDTO> convertedDTOS = inertialDTOS.stream().map(PacketParser::convertInertialToInfo).map(InfoDTO::getConvertedDto).collect(Collectors.toList());
-        try (FileWriter output = new FileWriter(outputFile); CSVPrinter printer = new CSVPrinter(output, CSVFormat.DEFAULT.withHeader(POSITION_CSV_HEADER))) {
-            convertedDTOS.forEach(x -> {
-                try {
-                    printer.printRecord(x.getLatitudeD(), x.getLongitudeD(), x.getLatitudeM(), x.getLongitudeM());
-                } catch (IOException e) {
-                    System.out.println("Error occurred during writing line");
-                }
-            });
+        try (CsvWriter writer = new CsvWriter(outputFile)) {
+            writer.header(POSITION_CSV_HEADER);
+            double[] ecef = new double[3];
+            for (InertialDTO x : inertialDTOS) {
+                GeodeticConverter.toEcef(x.latitude, x.longitude, x.hEll, ecef);
+                writePosition(writer, x.latitude, x.longitude, ecef[1], ecef[0]);
+            }
             return outputFile;
         } catch (IOException e) {
             System.out.println("Error occurred during output file creation");
@@ -898,6 +881,11 @@ public class PacketParser {
         }
     }
 
+    private static void writePosition(CsvWriter writer, double latitude, double longitude, double latitudeM, double longitudeM) throws IOException {
+        writer.field(latitude, CsvWriter.DEGREES).field(longitude, CsvWriter.DEGREES)
+                .field(latitudeM, CsvWriter.METERS).field(longitudeM, CsvWriter.METERS).endRow();
+    }
+
     @Nullable
     public static File createDOPCsv(List<Record> records){
        return createDOPCsv(records, null);
@@ -905,52 +893,182 @@ public class PacketParser {
 
     @Nullable
     public static File createDOPCsv(List<Record> records, @Nullable String path){
+        return createDOPCsv(records.stream(), path);
+    }
+
+    @Nullable
+    public static File createDOPCsv(Stream<Record> records){
+        return createDOPCsv(records, null);
+    }
+
+    /**
+     * Записывает DOP эпох с координатами, DOP и временем ({@link #hasDopRow(Record)}) в порядке возрастания времени,
+     * эпохи с повторяющимся до миллисекунды временем пропускаются - так же, как {@link #createDOPCsv(TrackColumns, String)}.
+     * Пока время не убывает, строки пишутся по мере поступления записей и записи в памяти не накапливаются.
+     * Если время пошло назад, оставшиеся строки собираются в памяти, а файл в конце пересортировывается.
+     */
+    @Nullable
+    public static File createDOPCsv(Stream<Record> records, @Nullable String path){
         String finalPath = path == null ? DOP_FILE_NAME : path;
         File outputFile = new File(finalPath);
-        try (FileWriter output = new FileWriter(outputFile); CSVPrinter printer = new CSVPrinter(output, CSVFormat.DEFAULT.withHeader(DOP_CSV_HEADER))){
-            List<InfoDTO> dopList = getDopDTOList(records).stream().map(x->new InfoDTO(x.getHDOP(), x.getVDOP(), x.getPDOP(), x.getDateTime())).collect(Collectors.toList());
-            TreeSet<InfoDTO> sortedSet = new TreeSet<>(Comparator.comparing(InfoDTO::getDateTime));
-            sortedSet.addAll(dopList);
-            sortedSet.forEach(x->{
-                try {
-                    printer.printRecord(x.getHDOP(), x.getVDOP(), x.getPDOP(), x.getDateTime().toInstant(OffsetDateTime.now().getOffset())
-                            .toEpochMilli());
-                } catch (IOException e) {
-                    System.out.println("Error occurred during writing line");
+        long offsetMillis = OffsetDateTime.now().getOffset().getTotalSeconds() * 1000L;
+        DopRows unsorted = null;
+        try (CsvWriter writer = new CsvWriter(outputFile)){
+            writer.header(DOP_CSV_HEADER);
+            long previous = Long.MIN_VALUE;
+            for (Iterator<Record> iterator = records.filter(PacketParser::hasDopRow).iterator(); iterator.hasNext(); ){
+                Record x = iterator.next();
+                long time = x.getEpochMillis() - offsetMillis;
+                if (unsorted == null && time < previous){
+                    unsorted = new DopRows();
                 }
-            });
-            return outputFile;
+                if (unsorted != null){
+                    unsorted.add(x.getHDOP(), x.getVDOP(), x.getPDOP(), time);
+                    continue;
+                }
+                if (time == previous){
+                    continue;
+                }
+                previous = time;
+                writeDop(writer, x.getHDOP(), x.getVDOP(), x.getPDOP(), time);
+            }
         } catch (IOException e) {
             System.out.println("Error occurred during output file creation");
             return null;
         }
+        if (unsorted != null){
+            try {
+                rewriteSorted(outputFile, unsorted);
+            } catch (IOException e) {
+                System.out.println("Error occurred during output file creation");
+                return null;
+            }
+        }
+        return outputFile;
     }
 
-    public static List<InfoDTO> getDopDTOList(List<Record> records){
-        List<InfoDTO> result = new ArrayList<>();
-        for (Record x : records){
-            List<Sentence> sentences = x.getSentences();
-            Optional<Sentence> gsaSentenceOpt = sentences.stream().filter(sentence -> sentence.getSentenceId() != null && sentence.getSentenceId().equals(GSA_STR)).findFirst();
-            Optional<Sentence> zdaSentenceOpt = sentences.stream().filter(sentence -> sentence.getSentenceId() != null && sentence.getSentenceId().equals(ZDA_STR)).findFirst();
-            Optional<Sentence> ggaSentenceOpt = sentences.stream().filter(sentence -> sentence.getSentenceId() != null && sentence.getSentenceId().equals(GGA_STR)).findFirst();
-            if (gsaSentenceOpt.isPresent() && zdaSentenceOpt.isPresent() && ggaSentenceOpt.isPresent()){
-                GSASentence gsaSentence = (GSASentence) gsaSentenceOpt.get();
-                ZDASentence zdaSentence = (ZDASentence) zdaSentenceOpt.get();
-                GGASentence ggaSentence = (GGASentence) ggaSentenceOpt.get();
-                double hDOP;
-                double vDOP;
-                double pDOP;
-                try {
-                    hDOP = gsaSentence.getHorizontalDOP();
-                    vDOP = gsaSentence.getVerticalDOP();
-                    pDOP = gsaSentence.getPositionDOP();
-                } catch (DataNotAvailableException exception) {
+    /**
+     * Эпоха попадает в файл DOP: есть координаты (как у эпох {@link TrackColumns}), DOP и время.
+     */
+    private static boolean hasDopRow(Record x){
+        return x.hasPosition() && x.hasDOP() && x.hasDateTime();
+    }
+
+    /**
+     * Строки файла DOP, которые не удалось записать по порядку.
+     */
+    private static final class DopRows {
+        private double[] values = new double[3 * 64];
+        private long[] times = new long[64];
+        private int size;
+
+        void add(double hDOP, double vDOP, double pDOP, long time){
+            if (size == times.length){
+                values = Arrays.copyOf(values, values.length * 2);
+                times = Arrays.copyOf(times, times.length * 2);
+            }
+            values[3 * size] = hDOP;
+            values[3 * size + 1] = vDOP;
+            values[3 * size + 2] = pDOP;
+            times[size++] = time;
+        }
+    }
+
+    /**
+     * Дополняет уже записанные по порядку строки файла строками rest, сортирует по времени и записывает файл заново.
+     * Из строк с одинаковым временем остаётся первая по порядку записей.
+     */
+    private static void rewriteSorted(File file, DopRows rest) throws IOException {
+        DopRows rows = new DopRows();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))){
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null){
+                String[] fields = line.split(",");
+                rows.add(Double.parseDouble(fields[0]), Double.parseDouble(fields[1]), Double.parseDouble(fields[2]), Long.parseLong(fields[3]));
+            }
+        }
+        for (int i = 0; i < rest.size; i++){
+            rows.add(rest.values[3 * i], rest.values[3 * i + 1], rest.values[3 * i + 2], rest.times[i]);
+        }
+        long[] times = rows.times;
+        int[] indexes = IntStream.range(0, rows.size).boxed().sorted(Comparator.comparingLong(i -> times[i])).mapToInt(Integer::intValue).toArray();
+        try (CsvWriter writer = new CsvWriter(file)){
+            writer.header(DOP_CSV_HEADER);
+            long previous = Long.MIN_VALUE;
+            for (int i : indexes){
+                if (times[i] == previous){
+                    continue;
+                }
+                previous = times[i];
+                writeDop(writer, rows.values[3 * i], rows.values[3 * i + 1], rows.values[3 * i + 2], times[i]);
+            }
+        }
+    }
+
+    @Nullable
+    public static File createDOPCsv(TrackColumns track){
+        return createDOPCsv(track, null);
+    }
+
+    /**
+     * Записывает DOP эпох трека в порядке возрастания времени, эпохи с повторяющимся до миллисекунды временем пропускаются.
+     * В трек входят только эпохи с координатами, поэтому строки те же, что у {@link #createDOPCsv(Stream, String)}.
+     */
+    @Nullable
+    public static File createDOPCsv(TrackColumns track, @Nullable String path){
+        String finalPath = path == null ? DOP_FILE_NAME : path;
+        File outputFile = new File(finalPath);
+        long offsetMillis = OffsetDateTime.now().getOffset().getTotalSeconds() * 1000L;
+        int[] indexes = IntStream.range(0, track.size()).filter(i -> track.hasDOP(i) && track.hasTime(i)).toArray();
+        if (!isSortedByTime(track, indexes)){
+            indexes = IntStream.of(indexes).boxed().sorted(Comparator.comparingLong(track::getEpochMillis)).mapToInt(Integer::intValue).toArray();
+        }
+        try (CsvWriter writer = new CsvWriter(outputFile)){
+            writer.header(DOP_CSV_HEADER);
+            long previous = Long.MIN_VALUE;
+            for (int i : indexes){
+                long time = track.getEpochMillis(i);
+                if (time == previous){
                     continue;
                 }
-                result.add(new InfoDTO(hDOP, vDOP, pDOP, mapNmeaTimeToJavaTime(zdaSentence), ggaSentence.getPosition().getLongitude(), ggaSentence.getPosition().getLatitude(), ggaSentence.getAltitude(), ggaSentence.getSatelliteCount()));
+                previous = time;
+                writeDop(writer, track.getHDOP(i), track.getVDOP(i), track.getPDOP(i), time - offsetMillis);
+            }
+            return outputFile;
+        } catch (IOException e) {
+            System.out.println("Error occurred during output file creation");
+            return null;
+        }
+    }
+
+    private static void writeDop(CsvWriter writer, double hDOP, double vDOP, double pDOP, long time) throws IOException {
+        writer.field(hDOP, CsvWriter.DOP).field(vDOP, CsvWriter.DOP).field(pDOP, CsvWriter.DOP).field(time).endRow();
+    }
+
+    private static boolean isSortedByTime(TrackColumns track, int[] indexes){
+        for (int i = 1; i < indexes.length; i++){
+            if (track.getEpochMillis(indexes[i - 1]) > track.getEpochMillis(indexes[i])){
+                return false;
             }
         }
-        return result;
+        return true;
+    }
+
+    public static List<InfoDTO> getDopDTOList(List<Record> records){
+        return getDopDTOList(records.stream());
+    }
+
+    public static List<InfoDTO> getDopDTOList(Stream<Record> records){
+        return records.map(PacketParser::getDopDTO).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Nullable
+    private static InfoDTO getDopDTO(Record x){
+        if (!x.hasDOP() || !x.hasDateTime() || !x.hasPosition() || Double.isNaN(x.getAltitude()) || x.getSatelliteCount() == NmeaTokenizer.NO_VALUE){
+            return null;
+        }
+        return new InfoDTO(x.getHDOP(), x.getVDOP(), x.getPDOP(), x.getDateTime(), x.getLongitude(), x.getLatitude(), x.getAltitude(), x.getSatelliteCount());
     }
 
     public static LocalDateTime mapNmeaTimeToJavaTime(Date date, Time time){
@@ -974,81 +1092,87 @@ public class PacketParser {
         return mapNmeaTimeToJavaTime(zdaSentence.getDate(), time);
     }
 
+    /**
+     * Разбор файла Inertial Explorer, см. {@link TrackFileParser#parseInertialExplorerFile(File)}.
+     */
     public static List<InertialDTO> parseInertialExplorerFile(File inertialFile){
-        List<InertialDTO> result = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(inertialFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                result.add(parseInertialLine(line));
-            }
+        try {
+            return TrackFileParser.parseInertialExplorerFile(inertialFile);
         } catch (IOException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
-        return result;
     }
 
+    /**
+     * Разбор файла RTKPOST, см. {@link TrackFileParser#parseRTKPostFile(File)}.
+     */
     public static List<RTKPostDTO> parseRTKPostFile(File rtkFile){
-        List<RTKPostDTO> result = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(rtkFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (!line.startsWith("%")){
-                    result.add(parseRTKPostLine(line));
-                }
-            }
+        try {
+            return TrackFileParser.parseRTKPostFile(rtkFile);
         } catch (IOException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
-        return result;
     }
 
     public static InertialDTO parseInertialLine(String line){
-        String[] strArr = line.split(WHITESPACE_SPLIT_PATTERN);
-        if (strArr.length != 7 ){
-            throw new UnsupportedLineException("Incorrect Inertial Explorer line");
-        }
-        LocalTime time = LocalTime.parse(strArr[0]);
-        double latitude = Double.parseDouble(strArr[1]);
-        double longtitude = Double.parseDouble(strArr[2]);
-        double hEll = Double.parseDouble(strArr[3]);
-        double sdHoriz = Double.parseDouble(strArr[4]);
-        double sdHeight = Double.parseDouble(strArr[5]);
-        return new InertialDTO(time, latitude, longtitude, hEll, sdHoriz, sdHeight);
+        return TrackFileParser.parseInertialLine(line);
     }
 
     public static RTKPostDTO parseRTKPostLine(String line){
-        String[] strArr = line.split(WHITESPACE_SPLIT_PATTERN);
-        if (strArr.length<23){
-            throw new UnsupportedLineException("Incorrect RTKPOST line");
-        }
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy/MM/dd", Locale.ENGLISH);
-        LocalDate date = LocalDate.parse(strArr[0], formatter);
-        LocalTime time = LocalTime.parse(strArr[1]);
-        double latitude = Double.parseDouble(strArr[2]);
-        double longitude = Double.parseDouble(strArr[3]);
-        double height = Double.parseDouble(strArr[4]);
-        int satelliteCount = Integer.parseInt(strArr[5]);
-        return new RTKPostDTO(date, time, latitude, longitude, height, satelliteCount);
+        return TrackFileParser.parseRTKPostLine(line);
     }
 
     public static File createDeltaFile(String path, List<? extends PositionWithTime> pwtList1, List<? extends PositionWithTime> pwtList2){
-        if (pwtList1.isEmpty()){
+        return createDeltaFile(path, pwtList1, pwtList2, TrackMatcher.exact());
+    }
+
+    /**
+     * Создаёт файл разностей между измеренным и эталонным треками.
+     * Разности записываются по мере сопоставления эпох, промежуточный список не создаётся.
+     * Последние колонки - смещение измеренной точки от эталонной в метрах по осям восток/север/верх.
+     */
+    public static File createDeltaFile(String path, List<? extends PositionWithTime> measured, List<? extends PositionWithTime> reference, TrackMatcher matcher){
+        return createDeltaFile(path, measured, reference, matcher, null);
+    }
+
+    /**
+     * То же, но каждая записанная разность дополнительно передаётся deltaConsumer (например, для построения графиков).
+     */
+    public static File createDeltaFile(String path, List<? extends PositionWithTime> measured, List<? extends PositionWithTime> reference, TrackMatcher matcher,
+                                       @Nullable Consumer<ConvertedDTO> deltaConsumer){
+        if (measured.isEmpty()){
             throw new IllegalStateException("First list cannot be empty");
         }
-        if (pwtList2.isEmpty()){
+        if (reference.isEmpty()){
             throw new IllegalStateException("Second list cannot be empty");
         }
-        List<ConvertedDTO> deltaList = getDeltaListUnsynced(pwtList1, pwtList2);
         File outputFile = new File(path);
-        try (FileWriter output = new FileWriter(outputFile); CSVPrinter printer = new CSVPrinter(output, CSVFormat.DEFAULT.withHeader(DELTA_CSV_HEADER))) {
-            deltaList.forEach(x -> {
+        ZoneOffset offset = OffsetDateTime.now().getOffset();
+        try (CsvWriter writer = new CsvWriter(outputFile)) {
+            writer.header(DELTA_CSV_HEADER);
+            double[] enu = new double[3];
+            matcher.match(measured.iterator(), reference.iterator(), (pwt1, pwt2) -> {
+                ConvertedDTO x = getDeltaDto(pwt1, pwt2);
+                GeodeticConverter.toEnu(pwt2.getLatitude(), pwt2.getLongitude(), pwt2.getAltitude(),
+                        pwt1.getLatitude(), pwt1.getLongitude(), pwt1.getAltitude(), enu);
                 try {
-                    String count = x.satelliteCount == -1 ? "" : String.valueOf(x.satelliteCount);
-                    printer.printRecord(BigDecimal.valueOf(x.getLatitudeD()).toPlainString(), BigDecimal.valueOf(x.getLongitudeD()).toPlainString(), x.getDateTime().toInstant(OffsetDateTime.now().getOffset())
-                            .toEpochMilli(), BigDecimal.valueOf(x.getLatitudeM()).toPlainString(), BigDecimal.valueOf(x.getLongitudeM()).toPlainString(), count);
+                    writer.field(x.getLatitudeD(), CsvWriter.DEGREES).field(x.getLongitudeD(), CsvWriter.DEGREES)
+                            .field(x.getDateTime().toInstant(offset).toEpochMilli())
+                            .field(x.getLatitudeM(), CsvWriter.METERS).field(x.getLongitudeM(), CsvWriter.METERS);
+                    if (x.satelliteCount == -1) {
+                        writer.empty();
+                    } else {
+                        writer.field(x.satelliteCount);
+                    }
+                    writer.field(enu[0], CsvWriter.METERS).field(enu[1], CsvWriter.METERS).field(enu[2], CsvWriter.METERS).endRow();
                 } catch (IOException e) {
                     System.out.println("Error occurred during writing line");
                 }
+                if (deltaConsumer != null) {
+                    deltaConsumer.accept(x);
+                }
             });
         } catch (IOException e) {
             System.out.println("Error occurred during delta file creation");
@@ -1056,39 +1180,6 @@ public class PacketParser {
         }
         return new File("");
     }
-    private static List<ConvertedDTO> getDeltaListUnsynced(List<? extends PositionWithTime> pwtList1, List<? extends PositionWithTime> pwtList2){
-        List<ConvertedDTO> result = new ArrayList<>();
-        int i = 0;
-        int j = 0;
-        while (i < pwtList1.size() && j < pwtList2.size()){
-            PositionWithTime pwt1 = pwtList1.get(i);
-            PositionWithTime pwt2 = pwtList2.get(j);
-            LocalTime time1 = pwt1.getTime();
-            LocalTime time2 = pwt2.getTime();
-            int comparisonResult = time1.compareTo(time2);
-            if (comparisonResult == 0){
-                result.add(getDeltaDto(pwt1, pwt2));
-                j++;
-                i++;
-            }
-            if (comparisonResult > 0){
-                if (j == pwtList2.size() -1){
-                    break;
-                } else {
-                    j++;
-                    continue;
-                }
-            }
-            if (comparisonResult < 0){
-                if (i == pwtList1.size() -1){
-                    break;
-                } else {
-                    i++;
-                }
-            }
-        }
-        return result;
-    }
 
     private static ConvertedDTO getDeltaDto(InfoDTO infoDTO, InertialDTO inertialDTO){
         ConvertedDTO track = convertInertialToInfo(inertialDTO).getConvertedDto();
@@ -1139,10 +1230,8 @@ public class PacketParser {
         double longitude = positionWithTime.getLongitude();
         double altitude = positionWithTime.getAltitude();
         LocalTime time = positionWithTime.getTime();
-        double n = WGS84az/Math.sqrt(1 - Math.pow(WGS84e1,2)*Math.pow(Math.sin(latitude),2));
-        double x = (n+altitude)*Math.cos(latitude)*Math.cos(longitude);
-        double y = (n+altitude)*Math.cos(latitude)*Math.sin(longitude);
-        double z = (n*(1-Math.pow(WGS84e1,2))+altitude)*Math.sin(latitude);
-        return new ConvertedDTO(longitude, latitude, altitude, x,y,z,time);
+        double[] ecef = new double[3];
+        GeodeticConverter.toEcef(latitude, longitude, altitude, ecef);
+        return new ConvertedDTO(longitude, latitude, altitude, ecef[0], ecef[1], ecef[2], time);
     }
 }
@@ -0,0 +1,421 @@
+package parser;
+
+import org.jetbrains.annotations.Nullable;
+import parser.data.Record;
+import parser.data.RecordSource;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Многопоточный парсер NMEA-файлов.
+ * Файл отображается в память частями ({@link FileChannel#map}), границы частей сдвигаются на начало эпохи ({@link EpochBoundary}),
+ * после чего части разбираются параллельно в {@link ForkJoinPool}. Результат совпадает с {@link PacketParser#parse(File)}:
+ * записи идут в порядке файла и имеют сквозную нумерацию.
+ * Строки, отбрасываемые {@link ValidationPolicy}, не влияют на деление на эпохи ни при делении на части, ни при нумерации.
+ * Сжатый файл ({@link CompressedInput}) распаковывается потоком и разбирается последовательно.
+ */
+public class ParallelPacketParser {
+
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 64 << 20;
+    private static final int SCAN_WINDOW = 1 << 20;
+    private static final int TASKS_PER_THREAD = 4;
+    private static final int MAX_LINE_LENGTH = 4096;
+    private static final int COMPRESSED_BATCH_SIZE = 16_384;
+
+    /**
+     * Получатель разобранных частей файла. Вызывается в потоке, запустившем разбор, строго в порядке файла.
+     */
+    public interface ChunkListener {
+        void onChunk(List<Record> records, long bytesRead, long totalBytes);
+    }
+
+    private ParallelPacketParser() {
+    }
+
+    public static List<Record> parse(File nmeaFile) throws IOException {
+        return parse(nmeaFile, ForkJoinPool.commonPool());
+    }
+
+    public static List<Record> parse(File nmeaFile, ForkJoinPool pool) throws IOException {
+        return parse(nmeaFile, pool, (records, bytesRead, totalBytes) -> { });
+    }
+
+    /**
+     * Разбор с передачей результатов по частям. Если поток, вызвавший метод, прерван,
+     * оставшиеся части отменяются и выбрасывается {@link InterruptedIOException}.
+     */
+    public static List<Record> parse(File nmeaFile, ForkJoinPool pool, ChunkListener listener) throws IOException {
+        return parse(nmeaFile, pool, listener, ValidationPolicy.DEFAULT, new ParseStatistics());
+    }
+
+    /**
+     * @param policy     правило обработки строк с ошибками
+     * @param statistics счётчики, в которые добавляются результаты проверки строк файла
+     */
+    public static List<Record> parse(File nmeaFile, ForkJoinPool pool, ChunkListener listener,
+                                     ValidationPolicy policy, ParseStatistics statistics) throws IOException {
+        return parse(nmeaFile, pool, listener, null, policy, statistics);
+    }
+
+    /**
+     * Разбор, при котором записи хранят только основные значения и положение в файле, а строки читают из файла при обращении
+     * (см. {@link RecordSource}). Объём памяти зависит от количества записей, но не от размера предложений.
+     * Записи сжатого файла хранят строки: по смещению в сжатом файле их не прочитать.
+     */
+    public static List<Record> parseLazy(File nmeaFile, ForkJoinPool pool, ChunkListener listener) throws IOException {
+        return parseLazy(nmeaFile, pool, listener, ValidationPolicy.DEFAULT, new ParseStatistics());
+    }
+
+    public static List<Record> parseLazy(File nmeaFile, ForkJoinPool pool, ChunkListener listener,
+                                         ValidationPolicy policy, ParseStatistics statistics) throws IOException {
+        return parse(nmeaFile, pool, listener, new RecordSource(nmeaFile, policy), policy, statistics);
+    }
+
+    private static List<Record> parse(File nmeaFile, ForkJoinPool pool, ChunkListener listener, @Nullable RecordSource source,
+                                      ValidationPolicy policy, ParseStatistics statistics) throws IOException {
+        if (CompressedInput.isCompressed(nmeaFile)) {
+            return parseCompressed(nmeaFile, pool, listener, policy, statistics);
+        }
+        try (FileChannel channel = FileChannel.open(nmeaFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Long> bounds = chunkBounds(channel, size, pool, policy);
+            int chunkCount = bounds.size() - 1;
+
+            List<MappedByteBuffer> chunks = new ArrayList<>(chunkCount);
+            List<ForkJoinTask<Integer>> countTasks = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                MappedByteBuffer chunk = map(channel, bounds.get(i), bounds.get(i + 1));
+                chunks.add(chunk);
+                countTasks.add(pool.submit(() -> countPackets(chunk, policy)));
+            }
+            // номер первой записи части известен, как только посчитаны пакеты всех предыдущих частей
+            List<ForkJoinTask<List<Record>>> parseTasks = new ArrayList<>(chunkCount);
+            ParseStatistics[] chunkStatistics = new ParseStatistics[chunkCount];
+            int firstNumber = 1;
+            for (int i = 0; i < chunkCount; i++) {
+                ByteBuffer chunk = chunks.get(i).duplicate();
+                long base = bounds.get(i);
+                RecordAssembler assembler = new RecordAssembler(firstNumber, source, policy, new ParseStatistics());
+                chunkStatistics[i] = assembler.getStatistics();
+                parseTasks.add(pool.submit(() -> source == null
+                        ? parseChunk(chunk, assembler)
+                        : parseChunk(chunk, base, assembler)));
+                firstNumber += countTasks.get(i).join();
+            }
+            List<Record> records = new ArrayList<>(firstNumber - 1);
+            for (int i = 0; i < chunkCount; i++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    parseTasks.forEach(task -> task.cancel(false));
+                    throw new InterruptedIOException("Parsing of " + nmeaFile + " was interrupted");
+                }
+                List<Record> chunkRecords = parseTasks.get(i).join();
+                statistics.add(chunkStatistics[i]);
+                records.addAll(chunkRecords);
+                listener.onChunk(chunkRecords, bounds.get(i + 1), size);
+            }
+            return records;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Сжатый файл нельзя отобразить в память и разделить на части по смещениям: он распаковывается потоком
+     * (bgzip - параллельно по частям в pool), строки передаются сборщику записей по мере распаковки,
+     * а записи - получателю пачками по {@link #COMPRESSED_BATCH_SIZE}. Прогресс считается по байтам сжатого файла.
+     */
+    private static List<Record> parseCompressed(File nmeaFile, ForkJoinPool pool, ChunkListener listener,
+                                                ValidationPolicy policy, ParseStatistics statistics) throws IOException {
+        long size = nmeaFile.length();
+        List<Record> records = new ArrayList<>();
+        List<Record> batch = new ArrayList<>();
+        try (CompressedInput input = CompressedInput.open(nmeaFile, pool);
+             RecordIterator iterator = new RecordIterator(new BufferedReader(new InputStreamReader(input, StandardCharsets.ISO_8859_1)),
+                     new RecordAssembler(1, null, policy, statistics))) {
+            while (iterator.hasNext()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Parsing of " + nmeaFile + " was interrupted");
+                }
+                batch.add(iterator.next());
+                if (batch.size() == COMPRESSED_BATCH_SIZE) {
+                    records.addAll(batch);
+                    listener.onChunk(batch, input.getCompressedBytesRead(), size);
+                    batch = new ArrayList<>();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        records.addAll(batch);
+        listener.onChunk(batch, size, size);
+        return records;
+    }
+
+    /**
+     * Смещения начала записей (эпох) в файле. Последний элемент - размер файла,
+     * так что запись с индексом i занимает байты [offsets[i], offsets[i + 1]).
+     */
+    public static long[] packetOffsets(File nmeaFile, ForkJoinPool pool) throws IOException {
+        return packetOffsets(nmeaFile, pool, ValidationPolicy.DEFAULT);
+    }
+
+    public static long[] packetOffsets(File nmeaFile, ForkJoinPool pool, ValidationPolicy policy) throws IOException {
+        try (FileChannel channel = FileChannel.open(nmeaFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Long> bounds = chunkBounds(channel, size, pool, policy);
+            int chunkCount = bounds.size() - 1;
+            List<ForkJoinTask<long[]>> tasks = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                MappedByteBuffer chunk = map(channel, bounds.get(i), bounds.get(i + 1));
+                long base = bounds.get(i);
+                tasks.add(pool.submit(() -> packetStarts(chunk, base, policy)));
+            }
+            List<long[]> starts = new ArrayList<>(chunkCount);
+            int count = 0;
+            for (ForkJoinTask<long[]> task : tasks) {
+                long[] chunkStarts = task.join();
+                starts.add(chunkStarts);
+                count += chunkStarts.length;
+            }
+            long[] offsets = new long[count + 1];
+            int position = 0;
+            for (long[] chunkStarts : starts) {
+                System.arraycopy(chunkStarts, 0, offsets, position, chunkStarts.length);
+                position += chunkStarts.length;
+            }
+            offsets[count] = size;
+            return offsets;
+        }
+    }
+
+    private static List<Long> chunkBounds(FileChannel channel, long size, ForkJoinPool pool, ValidationPolicy policy) throws IOException {
+        long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / ((long) pool.getParallelism() * TASKS_PER_THREAD)));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long bound = 0;
+        while (true) {
+            bound = findPacketStart(channel, bound + chunkSize, size, policy);
+            bounds.add(bound);
+            if (bound >= size) {
+                break;
+            }
+        }
+        return bounds;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long from, long to) throws IOException {
+        if (to - from > Integer.MAX_VALUE) {
+            throw new IOException("Packet at offset " + from + " is too large");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+
+    /**
+     * Ищет начало эпохи, начинающейся не раньше from. Время эпохи, внутри которой находится from, неизвестно,
+     * поэтому началом считается только смена времени после первого найденного предложения со временем ({@link EpochBoundary#inside()}).
+     *
+     * @return смещение начала строки, начинающей эпоху, или размер файла
+     */
+    private static long findPacketStart(FileChannel channel, long from, long size, ValidationPolicy policy) throws IOException {
+        EpochBoundary boundary = EpochBoundary.inside();
+        long windowStart = from - 1;
+        while (windowStart < size) {
+            long windowEnd = Math.min(size, windowStart + SCAN_WINDOW);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+            int limit = window.limit();
+            for (int i = 0; i < limit; i++) {
+                // строка на стыке окон может быть учтена дважды, повторное предложение с тем же временем состояние не меняет
+                if (window.get(i) == '\n' && i + 1 < limit && isTimedSentence(window, i + 1)) {
+                    CharSequence line = lineAt(channel, windowStart + i + 1, size);
+                    if (isAccepted(line, policy) && boundary.startsEpoch(line)) {
+                        return windowStart + i + 1;
+                    }
+                }
+            }
+            // перекрытие окон, чтобы не пропустить заголовок предложения на стыке
+            windowStart = windowEnd >= size ? size : windowEnd - 7;
+        }
+        return size;
+    }
+
+    /**
+     * Проверяет по заголовку, что строка может содержать время эпохи, до чтения строки целиком.
+     */
+    private static boolean isTimedSentence(ByteBuffer buffer, int index) {
+        if (index + 6 > buffer.limit()) {
+            return false;
+        }
+        return EpochBoundary.isTimedSentence((char) buffer.get(index),
+                (char) buffer.get(index + 3), (char) buffer.get(index + 4), (char) buffer.get(index + 5));
+    }
+
+    /**
+     * Читает строку, начинающуюся в файле со смещения offset, целиком, даже если она пересекает окно поиска.
+     */
+    private static CharSequence lineAt(FileChannel channel, long offset, long size) throws IOException {
+        return lineAt(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(size - offset, MAX_LINE_LENGTH)), 0);
+    }
+
+    private static boolean isAccepted(CharSequence line, ValidationPolicy policy) {
+        return !policy.isEnabled() || policy.accepts(line);
+    }
+
+    /**
+     * Строка части без копирования: при поиске границ эпох строки читаются только для разбора времени и проверки.
+     */
+    private static CharSequence lineAt(ByteBuffer buffer, int index) {
+        int limit = buffer.limit();
+        int end = index;
+        while (end < limit && buffer.get(end) != '\n' && buffer.get(end) != '\r') {
+            end++;
+        }
+        return new LineView(buffer, index, end);
+    }
+
+    private static final class LineView implements CharSequence {
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+
+        LineView(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new LineView(buffer, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder(length());
+            for (int i = start; i < end; i++) {
+                line.append((char) (buffer.get(i) & 0xFF));
+            }
+            return line.toString();
+        }
+    }
+
+    private static int countPackets(MappedByteBuffer chunk, ValidationPolicy policy) {
+        int count = 0;
+        EpochBoundary boundary = EpochBoundary.atStart();
+        int limit = chunk.limit();
+        for (int i = 0; i < limit; i++) {
+            if (isPacketStart(chunk, i, boundary, policy)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long[] packetStarts(MappedByteBuffer chunk, long base, ValidationPolicy policy) {
+        long[] starts = new long[countPackets(chunk, policy)];
+        int count = 0;
+        EpochBoundary boundary = EpochBoundary.atStart();
+        int limit = chunk.limit();
+        for (int i = 0; i < limit && count < starts.length; i++) {
+            if (isPacketStart(chunk, i, boundary, policy)) {
+                starts[count++] = base + i;
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * Учитывает строку, начинающуюся с индекса index части, если в нём начинается строка с временем эпохи.
+     * Часть начинается с начала эпохи, поэтому состояние boundary совпадает с состоянием {@link RecordAssembler} части.
+     */
+    private static boolean isPacketStart(ByteBuffer chunk, int index, EpochBoundary boundary, ValidationPolicy policy) {
+        if ((index != 0 && chunk.get(index - 1) != '\n') || !isTimedSentence(chunk, index)) {
+            return false;
+        }
+        CharSequence line = lineAt(chunk, index);
+        return isAccepted(line, policy) && boundary.startsEpoch(line);
+    }
+
+    private static List<Record> parseChunk(ByteBuffer chunk, RecordAssembler assembler) {
+        List<Record> records = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteBufferInputStream(chunk), StandardCharsets.ISO_8859_1));
+        new RecordIterator(reader, assembler).forEachRemaining(records::add);
+        return records;
+    }
+
+    /**
+     * Разбор части с учётом смещений строк. Строки делятся так же, как в {@link BufferedReader#readLine()}.
+     */
+    private static List<Record> parseChunk(ByteBuffer chunk, long base, RecordAssembler assembler) {
+        List<Record> records = new ArrayList<>();
+        char[] line = new char[256];
+        int length = 0;
+        int lineStart = 0;
+        int limit = chunk.limit();
+        for (int i = 0; i <= limit; i++) {
+            byte b = i < limit ? chunk.get(i) : (byte) '\n';
+            if (b == '\n' || b == '\r') {
+                Record record = assembler.accept(new String(line, 0, length), base + lineStart);
+                if (record != null) {
+                    records.add(record);
+                }
+                length = 0;
+                lineStart = i + 1;
+            } else {
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = (char) (b & 0xFF);
+            }
+        }
+        Record last = assembler.finish(base + limit);
+        if (last != null) {
+            records.add(last);
+        }
+        return records;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
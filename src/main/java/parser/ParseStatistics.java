@@ -0,0 +1,71 @@
+package parser;
+
+import org.jetbrains.annotations.Nullable;
+import parser.NmeaValidator.Problem;
+
+/**
+ * Счётчики строк одного файла по результатам проверки {@link NmeaValidator}. Объект не потокобезопасен:
+ * при параллельном разборе каждая часть считается отдельно, а результаты объединяются {@link #add(ParseStatistics)}.
+ */
+public class ParseStatistics {
+
+    private final long[] problems = new long[Problem.values().length];
+    private long lines;
+    private long skipped;
+
+    /**
+     * Учитывает строку.
+     *
+     * @param problem проблема строки или null
+     * @param skip    строка отброшена
+     */
+    public void count(@Nullable Problem problem, boolean skip) {
+        lines++;
+        if (problem != null) {
+            problems[problem.ordinal()]++;
+        }
+        if (skip) {
+            skipped++;
+        }
+    }
+
+    public void add(ParseStatistics other) {
+        for (int i = 0; i < problems.length; i++) {
+            problems[i] += other.problems[i];
+        }
+        lines += other.lines;
+        skipped += other.skipped;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getCount(Problem problem) {
+        return problems[problem.ordinal()];
+    }
+
+    public boolean hasProblems() {
+        for (long count : problems) {
+            if (count != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("строк: ").append(lines).append(", отброшено: ").append(skipped);
+        for (Problem problem : Problem.values()) {
+            if (problems[problem.ordinal()] != 0) {
+                builder.append(", ").append(problem.getDescription()).append(": ").append(problems[problem.ordinal()]);
+            }
+        }
+        return builder.toString();
+    }
+}
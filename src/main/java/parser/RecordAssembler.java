@@ -0,0 +1,125 @@
+package parser;
+
+import org.jetbrains.annotations.Nullable;
+import parser.data.Record;
+import parser.data.RecordSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пошаговая сборка записей из строк NMEA, поступающих по одной (из файла, сокета или устройства).
+ * Запись - одна эпоха: она начинается с предложения со временем UTC и считается завершённой, когда приходит предложение
+ * с другим временем (см. {@link EpochBoundary}), поэтому предложения всех систем и источников (GN, GP, GL, GA, GB) одной эпохи
+ * попадают в одну запись независимо от того, идут они до или после GGA.
+ * Строки до первого предложения со временем и пустые строки пропускаются.
+ * Если задан {@link RecordSource}, собираются записи, которые хранят не строки, а своё положение в файле;
+ * для этого вместе со строками передаются их смещения.
+ * Каждая строка перед добавлением проверяется {@link NmeaValidator}, проблемные строки учитываются в {@link ParseStatistics}
+ * и отбрасываются или сохраняются согласно {@link ValidationPolicy}.
+ */
+public class RecordAssembler {
+
+    private List<String> lines = new ArrayList<>();
+    private int number;
+    @Nullable
+    private final RecordSource source;
+    private long start;
+    private final ValidationPolicy policy;
+    private final ParseStatistics statistics;
+    private final EpochBoundary boundary = EpochBoundary.atStart();
+
+    public RecordAssembler() {
+        this(1);
+    }
+
+    /**
+     * @param firstNumber номер, который получит первая запись
+     */
+    public RecordAssembler(int firstNumber) {
+        this(firstNumber, null);
+    }
+
+    /**
+     * @param firstNumber номер, который получит первая запись
+     * @param source      файл, из которого записи будут читать свои строки, или null
+     */
+    public RecordAssembler(int firstNumber, @Nullable RecordSource source) {
+        this(firstNumber, source, ValidationPolicy.DEFAULT, new ParseStatistics());
+    }
+
+    /**
+     * @param policy     правило обработки проблемных строк; для записей с source должно совпадать с правилом source
+     * @param statistics счётчики, в которые добавляются результаты проверки строк
+     */
+    public RecordAssembler(int firstNumber, @Nullable RecordSource source, ValidationPolicy policy, ParseStatistics statistics) {
+        this.number = firstNumber - 1;
+        this.source = source;
+        this.policy = policy;
+        this.statistics = statistics;
+    }
+
+    public ParseStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return запись, завершённая этой строкой, или null
+     */
+    @Nullable
+    public Record accept(String line) {
+        return accept(line, 0);
+    }
+
+    /**
+     * @param offset смещение начала строки в файле
+     * @return запись, завершённая этой строкой, или null
+     */
+    @Nullable
+    public Record accept(String line, long offset) {
+        if (line.isEmpty()) {
+            return null;
+        }
+        if (policy.isEnabled()) {
+            NmeaValidator.Problem problem = NmeaValidator.check(line);
+            boolean skip = problem != null && policy.isSkipped(problem);
+            statistics.count(problem, skip);
+            if (skip) {
+                return null;
+            }
+        }
+        Record completed = null;
+        if (boundary.startsEpoch(line)) {
+            completed = finish(offset);
+            start = offset;
+        } else if (lines.isEmpty()) {
+            return null;
+        }
+        lines.add(line);
+        return completed;
+    }
+
+    /**
+     * Завершает собираемую запись, например в конце файла.
+     *
+     * @return собранная запись или null, если строк не было
+     */
+    @Nullable
+    public Record finish() {
+        return finish(0);
+    }
+
+    /**
+     * @param end смещение конца записи в файле (начало следующей записи или конец файла)
+     */
+    @Nullable
+    public Record finish(long end) {
+        if (lines.isEmpty()) {
+            return null;
+        }
+        number++;
+        Record record = source == null ? new Record(lines, number) : new Record(lines, number, source, start, (int) (end - start));
+        lines = new ArrayList<>();
+        return record;
+    }
+}
@@ -0,0 +1,88 @@
+package parser;
+
+import parser.data.Record;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Потоковый итератор записей NMEA-файла.
+ * Записи собираются по мере чтения: очередная запись - эпоха, начинающаяся с предложения со временем UTC
+ * и заканчивающаяся перед предложением с другим временем ({@link RecordAssembler}),
+ * поэтому в памяти одновременно находится только одна собираемая запись, а не весь файл.
+ * Предложения, стоящие в файле до первого предложения со временем, пропускаются.
+ */
+public class RecordIterator implements Iterator<Record>, Closeable {
+
+    private final BufferedReader reader;
+    private final RecordAssembler assembler;
+
+    private Record next;
+    private boolean finished = false;
+
+    /**
+     * Сжатый файл (gzip, bgzip, zstd) распаковывается при чтении, см. {@link CompressedInput}.
+     */
+    public RecordIterator(File nmeaFile) throws IOException {
+        this(CompressedInput.reader(nmeaFile));
+    }
+
+    public RecordIterator(BufferedReader reader) {
+        this(reader, 1);
+    }
+
+    /**
+     * @param firstNumber номер, который получит первая запись (используется при разборе файла по частям)
+     */
+    public RecordIterator(BufferedReader reader, int firstNumber) {
+        this(reader, new RecordAssembler(firstNumber));
+    }
+
+    /**
+     * @param assembler сборщик записей с нужными номером первой записи, правилом проверки строк и счётчиками
+     */
+    public RecordIterator(BufferedReader reader, RecordAssembler assembler) {
+        this.reader = reader;
+        this.assembler = assembler;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = readRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Record result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Record readRecord() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            Record record = assembler.accept(line);
+            if (record != null) {
+                return record;
+            }
+        }
+        finished = true;
+        return assembler.finish();
+    }
+}
@@ -0,0 +1,386 @@
+package parser;
+
+import org.jetbrains.annotations.Nullable;
+import parser.data.Record;
+import parser.data.RecordSource;
+import parser.data.RecordTimeIndex;
+import parser.data.TrackColumns;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Двоичный кэш разобранного NMEA-файла, который хранится рядом с ним в файле с расширением {@link #EXTENSION}.
+ * Кэш содержит смещения записей в исходном файле и значения каждой записи по колонкам (время, координаты, DOP, количество спутников).
+ * Он действителен, пока не изменились путь, размер и время изменения исходного файла.
+ * Кэш отображается в память целиком и не копируется в кучу, записи читаются из исходного файла по смещениям только при обращении.
+ */
+public class SessionCache {
+
+    public static final String EXTENSION = ".nmeacache";
+
+    private static final long MAGIC = 0x48434341_454D4E4EL;
+    private static final int VERSION = 2;
+    private static final int BLOCK_SIZE = 1 << 20;
+    /**
+     * Сигнатура, версия, размер и время изменения исходного файла, длина пути и количество записей; путь записывается между ними.
+     */
+    private static final int HEADER_SIZE = 8 + 4 + 8 + 8 + 4 + 4;
+
+    private final File source;
+    private final RecordSource recordSource;
+    private final int size;
+    private final ByteBuffer offsets;
+    private final ByteBuffer timeMillis;
+    private final ByteBuffer epochMillis;
+    private final ByteBuffer latitude;
+    private final ByteBuffer longitude;
+    private final ByteBuffer altitude;
+    private final ByteBuffer hDOP;
+    private final ByteBuffer vDOP;
+    private final ByteBuffer pDOP;
+    private final ByteBuffer satelliteCount;
+
+    private SessionCache(File source, int size, MappedByteBuffer buffer, int dataStart) {
+        this.source = source;
+        this.recordSource = new RecordSource(source);
+        this.size = size;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int position = dataStart;
+        offsets = slice(buffer, position, (size + 1) * 8L);
+        position += (size + 1) * 8;
+        timeMillis = slice(buffer, position, size * 4L);
+        position += align(size * 4);
+        epochMillis = slice(buffer, position, size * 8L);
+        position += size * 8;
+        latitude = slice(buffer, position, size * 8L);
+        position += size * 8;
+        longitude = slice(buffer, position, size * 8L);
+        position += size * 8;
+        altitude = slice(buffer, position, size * 8L);
+        position += size * 8;
+        hDOP = slice(buffer, position, size * 8L);
+        position += size * 8;
+        vDOP = slice(buffer, position, size * 8L);
+        position += size * 8;
+        pDOP = slice(buffer, position, size * 8L);
+        position += size * 8;
+        satelliteCount = slice(buffer, position, size * 4L);
+    }
+
+    public static File cacheFile(File source) {
+        return new File(source.getPath() + EXTENSION);
+    }
+
+    /**
+     * @return кэш файла или null, если кэша нет или он устарел
+     */
+    @Nullable
+    public static SessionCache open(File source) {
+        File file = cacheFile(source);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getLong() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != source.length() || buffer.getLong() != source.lastModified()) {
+                return null;
+            }
+            byte[] path = new byte[buffer.getInt()];
+            buffer.get(path);
+            if (!new String(path, StandardCharsets.UTF_8).equals(source.getAbsolutePath())) {
+                return null;
+            }
+            int size = buffer.getInt();
+            int dataStart = align(buffer.position());
+            if (buffer.capacity() != dataStart + dataLength(size)) {
+                return null;
+            }
+            return new SessionCache(source, size, buffer, dataStart);
+        } catch (IOException e) {
+            System.out.println("Error occurred during cache reading: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Создаёт кэш для записей, полученных разбором всего файла source. Смещения берутся из записей с {@link RecordSource};
+     * файл просматривается заново, только если записи хранят строки.
+     *
+     * @return false, если смещения записей в файле не удалось сопоставить с записями или кэш был бы больше,
+     * чем {@link #open(File)} может отобразить в память (2 ГБ, около 29 млн записей)
+     */
+    public static boolean write(File source, List<Record> records) throws IOException {
+        int size = records.size();
+        byte[] path = source.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+        if (align(HEADER_SIZE + path.length) + dataLength(size) > Integer.MAX_VALUE) {
+            return false;
+        }
+        long[] recordOffsets = recordOffsets(source, records);
+        if (recordOffsets == null) {
+            recordOffsets = ParallelPacketParser.packetOffsets(source, ForkJoinPool.commonPool());
+            if (recordOffsets.length != size + 1) {
+                return false;
+            }
+        } else if (!isContiguous(records, recordOffsets)) {
+            return false;
+        }
+        File file = cacheFile(source);
+        File temporary = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            block.putLong(MAGIC).putInt(VERSION).putLong(source.length()).putLong(source.lastModified())
+                    .putInt(path.length).put(path).putInt(size);
+            pad(block);
+            for (long offset : recordOffsets) {
+                block = ensure(channel, block, 8).putLong(offset);
+            }
+            for (Record record : records) {
+                block = ensure(channel, block, 4).putInt(record.getTimeMillis());
+            }
+            pad(block);
+            for (Record record : records) {
+                block = ensure(channel, block, 8).putLong(record.getEpochMillis());
+            }
+            for (Record record : records) {
+                block = ensure(channel, block, 8).putDouble(record.getLatitude());
+            }
+            for (Record record : records) {
+                block = ensure(channel, block, 8).putDouble(record.getLongitude());
+            }
+            for (Record record : records) {
+                block = ensure(channel, block, 8).putDouble(record.getAltitude());
+            }
+            for (Record record : records) {
+                block = ensure(channel, block, 8).putDouble(record.getHDOP());
+            }
+            for (Record record : records) {
+                block = ensure(channel, block, 8).putDouble(record.getVDOP());
+            }
+            for (Record record : records) {
+                block = ensure(channel, block, 8).putDouble(record.getPDOP());
+            }
+            for (Record record : records) {
+                block = ensure(channel, block, 4).putInt(record.getSatelliteCount());
+            }
+            flush(channel, block);
+        }
+        if (file.exists() && !file.delete() || !temporary.renameTo(file)) {
+            throw new IOException("Cannot replace cache file " + file);
+        }
+        return true;
+    }
+
+    /**
+     * @return смещения записей и размер файла или null, если не все записи читаются из source
+     */
+    @Nullable
+    private static long[] recordOffsets(File source, List<Record> records) {
+        long[] offsets = new long[records.size() + 1];
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            if (record.getSource() == null || !record.getSource().getFile().equals(source)) {
+                return null;
+            }
+            offsets[i] = record.getOffset();
+        }
+        offsets[records.size()] = source.length();
+        return offsets;
+    }
+
+    /**
+     * Запись i должна занимать ровно байты [offsets[i], offsets[i + 1]), как при чтении из кэша, а последняя - заканчиваться в конце файла.
+     */
+    private static boolean isContiguous(List<Record> records, long[] offsets) {
+        for (int i = 0; i < records.size(); i++) {
+            if (offsets[i] + records.get(i).getLength() != offsets[i + 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public File getSource() {
+        return source;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return смещение начала записи в исходном файле; для i == size() - размер файла
+     */
+    public long getOffset(int i) {
+        return offsets.getLong(i * 8);
+    }
+
+    public int getTimeMillis(int i) {
+        return timeMillis.getInt(i * 4);
+    }
+
+    public long getEpochMillis(int i) {
+        return epochMillis.getLong(i * 8);
+    }
+
+    public double getLatitude(int i) {
+        return latitude.getDouble(i * 8);
+    }
+
+    public double getLongitude(int i) {
+        return longitude.getDouble(i * 8);
+    }
+
+    public double getAltitude(int i) {
+        return altitude.getDouble(i * 8);
+    }
+
+    public double getHDOP(int i) {
+        return hDOP.getDouble(i * 8);
+    }
+
+    public double getVDOP(int i) {
+        return vDOP.getDouble(i * 8);
+    }
+
+    public double getPDOP(int i) {
+        return pDOP.getDouble(i * 8);
+    }
+
+    public int getSatelliteCount(int i) {
+        return satelliteCount.getInt(i * 4);
+    }
+
+    /**
+     * Читает и разбирает запись с индексом i из исходного файла.
+     * Запись не хранит строки, строки недавно прочитанных записей кэшируются в {@link RecordSource}.
+     *
+     * @throws UncheckedIOException если исходный файл не удалось прочитать
+     */
+    public Record readRecord(int i) {
+        long from = getOffset(i);
+        int length = (int) (getOffset(i + 1) - from);
+        return new Record(recordSource.lines(from, length), i + 1, recordSource, from, length);
+    }
+
+    /**
+     * Читает записи с индексами [from, to) одним обращением к исходному файлу.
+     *
+     * @throws UncheckedIOException если исходный файл не удалось прочитать
+     */
+    public List<Record> readRecords(int from, int to) {
+        long start = getOffset(from);
+        ByteBuffer bytes = ByteBuffer.allocate((int) (getOffset(to) - start));
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            while (bytes.hasRemaining() && channel.read(bytes, start + bytes.position()) >= 0) {
+                // чтение до заполнения буфера
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<Record> records = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            int offset = (int) (getOffset(i) - start);
+            int length = (int) (getOffset(i + 1) - getOffset(i));
+            List<String> lines = recordSource.splitLines(bytes.array(), offset, Math.max(0, Math.min(length, bytes.position() - offset)));
+            records.add(new Record(lines, i + 1, recordSource, getOffset(i), length));
+        }
+        return records;
+    }
+
+    /**
+     * Записи файла в виде списка, элементы которого читаются из исходного файла при обращении и не хранятся.
+     */
+    public List<Record> records() {
+        return new AbstractList<Record>() {
+            @Override
+            public Record get(int index) {
+                return readRecord(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Колонки трека, совпадающие с {@link TrackColumns#of} по всем записям файла.
+     */
+    public TrackColumns toTrackColumns() {
+        TrackColumns columns = new TrackColumns();
+        for (int i = 0; i < size; i++) {
+            if (!Double.isNaN(getLatitude(i)) && !Double.isNaN(getLongitude(i))) {
+                columns.add(getLatitude(i), getLongitude(i), getAltitude(i), getEpochMillis(i),
+                        getHDOP(i), getVDOP(i), getPDOP(i), getSatelliteCount(i));
+            }
+        }
+        columns.trim();
+        return columns;
+    }
+
+    public RecordTimeIndex toTimeIndex(List<Record> records) {
+        long[] times = new long[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = getEpochMillis(i);
+        }
+        return new RecordTimeIndex(records, times);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, long length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position);
+        duplicate.limit((int) (position + length));
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long dataLength(int size) {
+        return (size + 1) * 8L + align(size * 4L) + size * 8L * 7 + size * 4L;
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static void pad(ByteBuffer block) {
+        while ((block.position() & 7) != 0) {
+            block.put((byte) 0);
+        }
+    }
+
+    private static ByteBuffer ensure(FileChannel channel, ByteBuffer block, int length) throws IOException {
+        if (block.remaining() < length) {
+            flush(channel, block);
+        }
+        return block;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer block) throws IOException {
+        block.flip();
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+        block.clear();
+    }
+}
@@ -0,0 +1,340 @@
+package parser;
+
+import exception.UnsupportedLineException;
+import org.jetbrains.annotations.Nullable;
+import parser.PacketParser.InertialDTO;
+import parser.PacketParser.RTKPostDTO;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static parser.NmeaTokenizer.NO_VALUE;
+
+/**
+ * Разбор текстовых треков Inertial Explorer и RTKPOST с полями, разделёнными пробелами.
+ * Поля находятся сканированием символов строки без регулярных выражений и промежуточных строк,
+ * время, дата и числа разбираются специализированными методами, общий формат используется только для нестандартных значений.
+ * Файлы читаются через отображение в память ({@link FileChannel#map}) окнами, выровненными по концу строки.
+ */
+public final class TrackFileParser {
+
+    private static final int INERTIAL_FIELD_COUNT = 7;
+    private static final int RTK_POST_MIN_FIELD_COUNT = 23;
+    private static final int MAX_WINDOW_SIZE = 256 << 20;
+    private static final DateTimeFormatter RTK_POST_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd", Locale.ENGLISH);
+
+    /**
+     * Получатель строк файла: строка занимает символы [start, end) последовательности text, символы конца строки не входят.
+     */
+    interface LineConsumer {
+        void accept(CharSequence text, int start, int end);
+    }
+
+    private TrackFileParser() {
+    }
+
+    public static List<InertialDTO> parseInertialExplorerFile(File inertialFile) throws IOException {
+        List<InertialDTO> result = new ArrayList<>();
+        int[] fields = new int[2 * (INERTIAL_FIELD_COUNT + 1)];
+        forEachLine(inertialFile, (text, start, end) -> {
+            if (!isBlank(text, start, end)) {
+                result.add(parseInertialLine(text, start, end, fields));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Строки, начинающиеся с '%' (заголовок RTKPOST), пропускаются.
+     */
+    public static List<RTKPostDTO> parseRTKPostFile(File rtkFile) throws IOException {
+        List<RTKPostDTO> result = new ArrayList<>();
+        int[] fields = new int[2 * RTK_POST_MIN_FIELD_COUNT];
+        DateCache dates = new DateCache();
+        forEachLine(rtkFile, (text, start, end) -> {
+            if (start < end && text.charAt(start) != '%' && !isBlank(text, start, end)) {
+                result.add(parseRTKPostLine(text, start, end, fields, dates));
+            }
+        });
+        return result;
+    }
+
+    public static InertialDTO parseInertialLine(CharSequence line) {
+        return parseInertialLine(line, 0, line.length(), new int[2 * (INERTIAL_FIELD_COUNT + 1)]);
+    }
+
+    public static RTKPostDTO parseRTKPostLine(CharSequence line) {
+        return parseRTKPostLine(line, 0, line.length(), new int[2 * RTK_POST_MIN_FIELD_COUNT], null);
+    }
+
+    /**
+     * Формат строки: время, широта, долгота, высота над эллипсоидом, СКО в плане, СКО по высоте и ещё одно поле.
+     */
+    private static InertialDTO parseInertialLine(CharSequence text, int start, int end, int[] fields) {
+        if (scanFields(text, start, end, fields) != INERTIAL_FIELD_COUNT) {
+            throw new UnsupportedLineException("Incorrect Inertial Explorer line");
+        }
+        return new InertialDTO(parseTime(text, fields[0], fields[1]),
+                parseDouble(text, fields[2], fields[3]), parseDouble(text, fields[4], fields[5]), parseDouble(text, fields[6], fields[7]),
+                parseDouble(text, fields[8], fields[9]), parseDouble(text, fields[10], fields[11]));
+    }
+
+    /**
+     * Формат строки: дата, время, широта, долгота, высота, показатель качества и не менее 17 полей точности.
+     */
+    private static RTKPostDTO parseRTKPostLine(CharSequence text, int start, int end, int[] fields, @Nullable DateCache dates) {
+        if (scanFields(text, start, end, fields) < RTK_POST_MIN_FIELD_COUNT) {
+            throw new UnsupportedLineException("Incorrect RTKPOST line");
+        }
+        return new RTKPostDTO(parseDate(text, fields[0], fields[1], dates), parseTime(text, fields[2], fields[3]),
+                parseDouble(text, fields[4], fields[5]), parseDouble(text, fields[6], fields[7]), parseDouble(text, fields[8], fields[9]),
+                parseInt(text, fields[10], fields[11]));
+    }
+
+    /**
+     * Находит поля строки, разделённые пробельными символами. Границы первых fields.length / 2 полей
+     * записываются в fields парами (начало, конец). Строка с пробелом в начале считается некорректной.
+     *
+     * @return количество полей в строке или -1, если строка начинается с пробельного символа
+     */
+    static int scanFields(CharSequence text, int start, int end, int[] fields) {
+        if (start < end && isWhitespace(text.charAt(start))) {
+            return -1;
+        }
+        int count = 0;
+        int index = start;
+        while (index < end) {
+            int fieldStart = index;
+            while (index < end && !isWhitespace(text.charAt(index))) {
+                index++;
+            }
+            if (2 * count + 1 < fields.length) {
+                fields[2 * count] = fieldStart;
+                fields[2 * count + 1] = index;
+            }
+            count++;
+            while (index < end && isWhitespace(text.charAt(index))) {
+                index++;
+            }
+        }
+        return count;
+    }
+
+    static double parseDouble(CharSequence text, int start, int end) {
+        double value = NmeaTokenizer.parseDouble(text, start, end);
+        if (Double.isNaN(value)) {
+            // экспонента, NaN и другие формы, которые понимает Double.parseDouble
+            return Double.parseDouble(text.subSequence(start, end).toString());
+        }
+        return value;
+    }
+
+    static int parseInt(CharSequence text, int start, int end) {
+        int value = end - start < 10 ? NmeaTokenizer.parseInt(text, start, end) : NO_VALUE;
+        if (value == NO_VALUE) {
+            return Integer.parseInt(text.subSequence(start, end).toString());
+        }
+        return value;
+    }
+
+    /**
+     * Разбирает время hh:mm, hh:mm:ss или hh:mm:ss.fffffffff, остальное - через {@link LocalTime#parse}.
+     */
+    static LocalTime parseTime(CharSequence text, int start, int end) {
+        long nanoOfDay = parseNanoOfDay(text, start, end);
+        if (nanoOfDay == NO_VALUE) {
+            return LocalTime.parse(text.subSequence(start, end));
+        }
+        return LocalTime.ofNanoOfDay(nanoOfDay);
+    }
+
+    private static long parseNanoOfDay(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length < 5 || text.charAt(start + 2) != ':') {
+            return NO_VALUE;
+        }
+        int hours = twoDigits(text, start);
+        int minutes = twoDigits(text, start + 3);
+        int seconds = 0;
+        long nanos = 0;
+        if (length > 5) {
+            if (length < 8 || text.charAt(start + 5) != ':') {
+                return NO_VALUE;
+            }
+            seconds = twoDigits(text, start + 6);
+            if (length > 8) {
+                int fractionDigits = length - 9;
+                if (text.charAt(start + 8) != '.' || fractionDigits < 1 || fractionDigits > 9) {
+                    return NO_VALUE;
+                }
+                for (int i = 0; i < 9; i++) {
+                    int digit = i < fractionDigits ? digit(text.charAt(start + 9 + i)) : 0;
+                    if (digit < 0) {
+                        return NO_VALUE;
+                    }
+                    nanos = nanos * 10 + digit;
+                }
+            }
+        }
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+            return NO_VALUE;
+        }
+        return (hours * 3600L + minutes * 60L + seconds) * 1_000_000_000L + nanos;
+    }
+
+    /**
+     * Разбирает дату yyyy/MM/dd. Дата одного файла обычно одна и та же, поэтому последняя разобранная дата кэшируется.
+     */
+    private static LocalDate parseDate(CharSequence text, int start, int end, @Nullable DateCache dates) {
+        if (end - start == 10 && text.charAt(start + 4) == '/' && text.charAt(start + 7) == '/') {
+            int century = twoDigits(text, start);
+            int yearOfCentury = twoDigits(text, start + 2);
+            int month = twoDigits(text, start + 5);
+            int day = twoDigits(text, start + 8);
+            if (century >= 0 && yearOfCentury >= 0 && month >= 0 && day >= 0) {
+                int key = ((century * 100 + yearOfCentury) * 100 + month) * 100 + day;
+                if (dates != null && dates.date != null && dates.key == key) {
+                    return dates.date;
+                }
+                try {
+                    LocalDate date = LocalDate.of(century * 100 + yearOfCentury, month, day);
+                    if (dates != null) {
+                        dates.key = key;
+                        dates.date = date;
+                    }
+                    return date;
+                } catch (DateTimeException ignored) {
+                    // несуществующие даты разрешает общий формат
+                }
+            }
+        }
+        return LocalDate.parse(text.subSequence(start, end), RTK_POST_DATE_FORMATTER);
+    }
+
+    /**
+     * Передаёт строки файла получателю. Файл отображается в память окнами не больше {@link #MAX_WINDOW_SIZE},
+     * конец окна сдвигается на конец последней целой строки. Сжатый файл ({@link CompressedInput}) читается построчно при распаковке.
+     */
+    static void forEachLine(File file, LineConsumer consumer) throws IOException {
+        if (CompressedInput.isCompressed(file)) {
+            try (BufferedReader reader = CompressedInput.reader(file)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    consumer.accept(line, 0, line.length());
+                }
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_WINDOW_SIZE, size - position));
+                int limit = window.limit();
+                if (position + limit < size) {
+                    while (limit > 0 && window.get(limit - 1) != '\n') {
+                        limit--;
+                    }
+                    if (limit == 0) {
+                        throw new IOException("Line at offset " + position + " is too long");
+                    }
+                }
+                CharSequence text = new ByteCharSequence(window);
+                int lineStart = 0;
+                for (int i = 0; i < limit; i++) {
+                    byte b = window.get(i);
+                    if (b == '\n' || b == '\r') {
+                        consumer.accept(text, lineStart, i);
+                        if (b == '\r' && i + 1 < limit && window.get(i + 1) == '\n') {
+                            i++;
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                if (lineStart < limit) {
+                    consumer.accept(text, lineStart, limit);
+                }
+                position += limit;
+            }
+        }
+    }
+
+    private static boolean isBlank(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Пробельные символы регулярного выражения \s.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static int twoDigits(CharSequence text, int index) {
+        int high = digit(text.charAt(index));
+        int low = digit(text.charAt(index + 1));
+        return high < 0 || low < 0 ? NO_VALUE : high * 10 + low;
+    }
+
+    private static int digit(char c) {
+        return c >= '0' && c <= '9' ? c - '0' : NO_VALUE;
+    }
+
+    private static class DateCache {
+        private int key;
+        private LocalDate date;
+    }
+
+    /**
+     * Байты буфера как символы ISO-8859-1 без копирования.
+     */
+    private static class ByteCharSequence implements CharSequence {
+
+        private final ByteBuffer buffer;
+
+        ByteCharSequence(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder builder = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                builder.append(charAt(i));
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package parser;
+
+import org.jetbrains.annotations.Nullable;
+import parser.data.PositionWithTime;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Iterator;
+import java.util.function.BiConsumer;
+
+/**
+ * Сопоставление измеренного трека с эталонным по времени суток за один проход.
+ * Оба трека должны быть упорядочены по времени. Из эталонного трека в памяти держится окно не более чем из четырёх точек,
+ * поэтому треки можно передавать как итераторы без загрузки целиком.
+ * Для каждой измеренной эпохи эталон берётся:
+ * <ul>
+ *     <li>точкой с тем же временем;</li>
+ *     <li>интерполяцией между соседними точками, если она включена и точки отстоят друг от друга не более чем на maxGap;</li>
+ *     <li>ближайшей точкой, если она отличается по времени не более чем на tolerance.</li>
+ * </ul>
+ * Иначе эпоха пропускается.
+ */
+public class TrackMatcher {
+
+    public enum Interpolation {
+        NONE,
+        LINEAR,
+        HERMITE
+    }
+
+    private static final int WINDOW_SIZE = 4;
+
+    private final long toleranceNanos;
+    private final Interpolation interpolation;
+    private final long maxGapNanos;
+
+    public TrackMatcher(Duration tolerance, Interpolation interpolation, Duration maxGap) {
+        this.toleranceNanos = tolerance.toNanos();
+        this.interpolation = interpolation;
+        this.maxGapNanos = maxGap.toNanos();
+    }
+
+    /**
+     * Сопоставление только точек с совпадающим временем.
+     */
+    public static TrackMatcher exact() {
+        return new TrackMatcher(Duration.ZERO, Interpolation.NONE, Duration.ZERO);
+    }
+
+    /**
+     * Сопоставление для файлов разностей: линейная интерполяция между точками эталона, отстоящими не более чем на секунду,
+     * иначе ближайшая точка в пределах 50 мс.
+     */
+    public static TrackMatcher interpolating() {
+        return new TrackMatcher(Duration.ofMillis(50), Interpolation.LINEAR, Duration.ofSeconds(1));
+    }
+
+    /**
+     * @param consumer получает пары (измеренная точка, точка эталона)
+     * @return количество сопоставленных эпох
+     */
+    public int match(Iterator<? extends PositionWithTime> measured, Iterator<? extends PositionWithTime> reference,
+                     BiConsumer<PositionWithTime, PositionWithTime> consumer) {
+        PositionWithTime[] window = new PositionWithTime[WINDOW_SIZE];
+        long[] times = new long[WINDOW_SIZE];
+        int count = 0;
+        int matched = 0;
+        while (measured.hasNext()) {
+            PositionWithTime point = measured.next();
+            long time = point.getTime().toNanoOfDay();
+            while (reference.hasNext() && countAfter(times, count, time) < 2) {
+                if (count == WINDOW_SIZE) {
+                    System.arraycopy(window, 1, window, 0, WINDOW_SIZE - 1);
+                    System.arraycopy(times, 1, times, 0, WINDOW_SIZE - 1);
+                    count--;
+                }
+                window[count] = reference.next();
+                times[count] = window[count].getTime().toNanoOfDay();
+                count++;
+            }
+            PositionWithTime referencePoint = referenceAt(window, times, count, time);
+            if (referencePoint != null) {
+                consumer.accept(point, referencePoint);
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static int countAfter(long[] times, int count, long time) {
+        int result = 0;
+        for (int i = count - 1; i >= 0 && times[i] > time; i--) {
+            result++;
+        }
+        return result;
+    }
+
+    @Nullable
+    private PositionWithTime referenceAt(PositionWithTime[] window, long[] times, int count, long time) {
+        int prev = -1;
+        for (int i = 0; i < count && times[i] <= time; i++) {
+            prev = i;
+        }
+        int next = prev + 1;
+        if (prev >= 0 && times[prev] == time) {
+            return window[prev];
+        }
+        boolean bracketed = prev >= 0 && next < count;
+        if (interpolation != Interpolation.NONE && bracketed && times[next] - times[prev] <= maxGapNanos) {
+            return interpolate(window, times, count, prev, next, time);
+        }
+        long prevDistance = prev >= 0 ? time - times[prev] : Long.MAX_VALUE;
+        long nextDistance = next < count ? times[next] - time : Long.MAX_VALUE;
+        if (Math.min(prevDistance, nextDistance) > toleranceNanos) {
+            return null;
+        }
+        return prevDistance <= nextDistance ? window[prev] : window[next];
+    }
+
+    private PositionWithTime interpolate(PositionWithTime[] window, long[] times, int count, int prev, int next, long time) {
+        PositionWithTime p1 = window[prev];
+        PositionWithTime p2 = window[next];
+        double dt = times[next] - times[prev];
+        double s = (time - times[prev]) / dt;
+        if (interpolation == Interpolation.LINEAR) {
+            return new InterpolatedPosition(time,
+                    p1.getLatitude() + (p2.getLatitude() - p1.getLatitude()) * s,
+                    p1.getLongitude() + (p2.getLongitude() - p1.getLongitude()) * s,
+                    p1.getAltitude() + (p2.getAltitude() - p1.getAltitude()) * s);
+        }
+        // соседние точки за перерывом в данных не учитываются: касательная берётся по отрезку [p1, p2]
+        boolean hasP0 = prev > 0 && times[prev] - times[prev - 1] <= maxGapNanos;
+        boolean hasP3 = next + 1 < count && times[next + 1] - times[next] <= maxGapNanos;
+        PositionWithTime p0 = hasP0 ? window[prev - 1] : null;
+        PositionWithTime p3 = hasP3 ? window[next + 1] : null;
+        double t0 = hasP0 ? times[prev - 1] : 0;
+        double t3 = hasP3 ? times[next + 1] : 0;
+        double s2 = s * s;
+        double s3 = s2 * s;
+        double h00 = 2 * s3 - 3 * s2 + 1;
+        double h10 = s3 - 2 * s2 + s;
+        double h01 = -2 * s3 + 3 * s2;
+        double h11 = s3 - s2;
+        double[] values = new double[3];
+        for (int k = 0; k < 3; k++) {
+            double v1 = component(p1, k);
+            double v2 = component(p2, k);
+            double m1 = p0 == null ? (v2 - v1) / dt : (v2 - component(p0, k)) / (times[next] - t0);
+            double m2 = p3 == null ? (v2 - v1) / dt : (component(p3, k) - v1) / (t3 - times[prev]);
+            values[k] = h00 * v1 + h10 * dt * m1 + h01 * v2 + h11 * dt * m2;
+        }
+        return new InterpolatedPosition(time, values[0], values[1], values[2]);
+    }
+
+    private static double component(PositionWithTime point, int index) {
+        switch (index) {
+            case 0:
+                return point.getLatitude();
+            case 1:
+                return point.getLongitude();
+            default:
+                return point.getAltitude();
+        }
+    }
+
+    private static class InterpolatedPosition implements PositionWithTime {
+
+        private final long nanoOfDay;
+        private final double latitude;
+        private final double longitude;
+        private final double altitude;
+
+        InterpolatedPosition(long nanoOfDay, double latitude, double longitude, double altitude) {
+            this.nanoOfDay = nanoOfDay;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.altitude = altitude;
+        }
+
+        @Override
+        public double getLongitude() {
+            return longitude;
+        }
+
+        @Override
+        public double getLatitude() {
+            return latitude;
+        }
+
+        @Override
+        public double getAltitude() {
+            return altitude;
+        }
+
+        @Override
+        public LocalTime getTime() {
+            return LocalTime.ofNanoOfDay(nanoOfDay);
+        }
+
+        @Nullable
+        @Override
+        public LocalDateTime getDateTime() {
+            return null;
+        }
+    }
+}
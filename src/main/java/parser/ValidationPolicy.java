@@ -0,0 +1,71 @@
+package parser;
+
+import parser.NmeaValidator.Problem;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Правило обработки строк с проблемами {@link NmeaValidator}: такие строки либо отбрасываются, либо остаются в записи.
+ * Проблемные строки учитываются в {@link ParseStatistics} в обоих случаях.
+ */
+public final class ValidationPolicy {
+
+    /**
+     * Отбрасываются строки с неверной контрольной суммой и обрезанные строки,
+     * строки неизвестных источников и типов остаются в записи и показываются как неизвестные предложения.
+     */
+    public static final ValidationPolicy DEFAULT = new ValidationPolicy(EnumSet.of(Problem.BAD_CHECKSUM, Problem.TRUNCATED), true);
+
+    /**
+     * Строки не проверяются и не учитываются.
+     */
+    public static final ValidationPolicy NONE = new ValidationPolicy(EnumSet.noneOf(Problem.class), false);
+
+    private final Set<Problem> skipped;
+    private final boolean enabled;
+
+    private ValidationPolicy(Set<Problem> skipped, boolean enabled) {
+        this.skipped = skipped;
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return правило, отбрасывающее строки с проблемой problem
+     */
+    public ValidationPolicy skip(Problem problem) {
+        Set<Problem> problems = EnumSet.noneOf(Problem.class);
+        problems.addAll(skipped);
+        problems.add(problem);
+        return new ValidationPolicy(problems, true);
+    }
+
+    /**
+     * @return правило, оставляющее строки с проблемой problem в записи
+     */
+    public ValidationPolicy keep(Problem problem) {
+        Set<Problem> problems = EnumSet.noneOf(Problem.class);
+        problems.addAll(skipped);
+        problems.remove(problem);
+        return new ValidationPolicy(problems, true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isSkipped(Problem problem) {
+        return skipped.contains(problem);
+    }
+
+    /**
+     * @return true, если строка должна остаться в записи
+     */
+    public boolean accepts(CharSequence line) {
+        if (!enabled) {
+            return true;
+        }
+        Problem problem = NmeaValidator.check(line);
+        return problem == null || !skipped.contains(problem);
+    }
+}
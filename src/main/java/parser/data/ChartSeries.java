@@ -0,0 +1,278 @@
+package parser.data;
+
+import java.util.Arrays;
+
+/**
+ * Ряд точек графика (время в миллисекундах, значение) с уровнями детализации для прореживания.
+ * Уровень k хранит для каждого блока из 2^k соседних точек индексы минимума и максимума в порядке следования,
+ * поэтому прореживание видимого интервала до заданного количества столбцов по min/max просматривает
+ * несколько блоков на столбец независимо от длины ряда и масштаба. Все уровни вместе занимают около 2n индексов.
+ */
+public class ChartSeries {
+
+    /**
+     * Самый грубый уровень содержит не меньше стольких блоков.
+     */
+    private static final int MIN_LEVEL_BLOCKS = 64;
+    /**
+     * Количество блоков выбранного уровня, приходящееся на один столбец.
+     */
+    private static final int BLOCKS_PER_BUCKET = 4;
+
+    private final long[] x;
+    private final double[] y;
+    /**
+     * levels[k - 1] - уровень с блоками по 2^k точек: пары индексов (первый, второй) экстремумов блока.
+     */
+    private final int[][] levels;
+
+    /**
+     * @param x время точек по возрастанию
+     * @param y значения без {@link Double#NaN}
+     */
+    ChartSeries(long[] x, double[] y) {
+        this.x = x;
+        this.y = y;
+        int count = 0;
+        while ((x.length >> (count + 1)) >= MIN_LEVEL_BLOCKS) {
+            count++;
+        }
+        levels = new int[count][];
+        for (int k = 1; k <= count; k++) {
+            levels[k - 1] = buildLevel(k);
+        }
+    }
+
+    private int[] buildLevel(int k) {
+        int blocks = x.length >> k;
+        int[] level = new int[2 * blocks];
+        int[] finer = k == 1 ? null : levels[k - 2];
+        for (int b = 0; b < blocks; b++) {
+            int min;
+            int max;
+            if (finer == null) {
+                min = 2 * b;
+                max = 2 * b + 1;
+                if (y[max] < y[min]) {
+                    min = max;
+                    max = 2 * b;
+                }
+            } else {
+                min = finer[4 * b];
+                max = finer[4 * b];
+                for (int j = 4 * b + 1; j < 4 * b + 4; j++) {
+                    int i = finer[j];
+                    if (y[i] < y[min]) {
+                        min = i;
+                    }
+                    if (y[i] > y[max]) {
+                        max = i;
+                    }
+                }
+            }
+            level[2 * b] = Math.min(min, max);
+            level[2 * b + 1] = Math.max(min, max);
+        }
+        return level;
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    public long getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * Прореживает точки интервала [from, to] до минимума и максимума в каждом из buckets столбцов одинаковой длительности.
+     * Соседние с интервалом точки добавляются, чтобы линия доходила до краёв графика.
+     *
+     * @return индексы выбранных точек по возрастанию
+     */
+    public int[] select(long from, long to, int buckets) {
+        int lo = Math.max(0, lowerBound(from) - 1);
+        int hi = Math.min(x.length, upperBound(to) + 1);
+        int count = hi - lo;
+        if (count <= 2 * buckets + 2) {
+            int[] result = new int[Math.max(0, count)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = lo + i;
+            }
+            return result;
+        }
+        int k = 0;
+        while (k < levels.length && ((long) BLOCKS_PER_BUCKET * buckets << (k + 1)) <= count) {
+            k++;
+        }
+        Buckets selected = new Buckets(x[lo], x[hi - 1], buckets);
+        if (k == 0) {
+            for (int i = lo; i < hi; i++) {
+                selected.add(i);
+            }
+        } else {
+            int firstBlock = (lo + (1 << k) - 1) >> k;
+            int endBlock = hi >> k;
+            int[] level = levels[k - 1];
+            for (int i = lo; i < firstBlock << k; i++) {
+                selected.add(i);
+            }
+            for (int j = 2 * firstBlock; j < 2 * endBlock; j++) {
+                selected.add(level[j]);
+            }
+            for (int i = endBlock << k; i < hi; i++) {
+                selected.add(i);
+            }
+        }
+        return selected.indexes(lo, hi - 1);
+    }
+
+    private int lowerBound(long value) {
+        int lo = 0;
+        int hi = x.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (x[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int upperBound(long value) {
+        int lo = 0;
+        int hi = x.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (x[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Индексы минимума и максимума точек в каждом столбце.
+     */
+    private class Buckets {
+        private final long from;
+        private final double width;
+        private final int[] min;
+        private final int[] max;
+
+        Buckets(long from, long to, int count) {
+            this.from = from;
+            this.width = Math.max(1, to - from) / (double) count;
+            min = new int[count];
+            max = new int[count];
+            Arrays.fill(min, -1);
+        }
+
+        void add(int i) {
+            int bucket = Math.min(min.length - 1, (int) ((x[i] - from) / width));
+            if (min[bucket] < 0) {
+                min[bucket] = i;
+                max[bucket] = i;
+            } else if (y[i] < y[min[bucket]]) {
+                min[bucket] = i;
+            } else if (y[i] > y[max[bucket]]) {
+                max[bucket] = i;
+            }
+        }
+
+        int[] indexes(int first, int last) {
+            int[] result = new int[2 * min.length + 2];
+            int count = 0;
+            result[count++] = first;
+            for (int b = 0; b < min.length; b++) {
+                if (min[b] < 0) {
+                    continue;
+                }
+                int a = Math.min(min[b], max[b]);
+                int c = Math.max(min[b], max[b]);
+                if (a > result[count - 1]) {
+                    result[count++] = a;
+                }
+                if (c > result[count - 1]) {
+                    result[count++] = c;
+                }
+            }
+            if (last > result[count - 1]) {
+                result[count++] = last;
+            }
+            return Arrays.copyOf(result, count);
+        }
+    }
+
+    /**
+     * Сборка ряда по точкам. Точки без времени ({@link Long#MIN_VALUE}) или без значения ({@link Double#NaN}) пропускаются,
+     * неупорядоченные по времени точки сортируются.
+     */
+    public static class Builder {
+        private long[] x = new long[1024];
+        private double[] y = new double[1024];
+        private int size;
+        private boolean sorted = true;
+
+        public Builder add(long time, double value) {
+            if (time == Long.MIN_VALUE || Double.isNaN(value)) {
+                return this;
+            }
+            if (size == x.length) {
+                x = Arrays.copyOf(x, size * 2);
+                y = Arrays.copyOf(y, size * 2);
+            }
+            if (size > 0 && time < x[size - 1]) {
+                sorted = false;
+            }
+            x[size] = time;
+            y[size] = value;
+            size++;
+            return this;
+        }
+
+        public ChartSeries build() {
+            long[] times = Arrays.copyOf(x, size);
+            double[] values = Arrays.copyOf(y, size);
+            if (!sorted) {
+                // редкий случай (файл с переходом через полночь без даты), поэтому сортировка через объекты
+                Integer[] order = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> Long.compare(x[a], x[b]));
+                for (int i = 0; i < size; i++) {
+                    times[i] = x[order[i]];
+                    values[i] = y[order[i]];
+                }
+            }
+            return new ChartSeries(times, values);
+        }
+    }
+
+    /**
+     * Ряд значения колонки трека по эпохам со временем.
+     */
+    public static ChartSeries of(TrackColumns track, Column column) {
+        Builder builder = new Builder();
+        for (int i = 0; i < track.size(); i++) {
+            builder.add(track.getEpochMillis(i), column.get(track, i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Значение эпохи трека, {@link Double#NaN} если оно отсутствует.
+     */
+    public interface Column {
+        double get(TrackColumns track, int i);
+    }
+}
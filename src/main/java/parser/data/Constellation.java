@@ -0,0 +1,120 @@
+package parser.data;
+
+import static parser.NmeaTokenizer.parseInt;
+
+/**
+ * Спутниковая система. Определяется по идентификатору источника предложения (GP, GL, GA, GB/BD, GQ, GI),
+ * для общего идентификатора GN - по системе из поля NMEA 4.10 или по диапазону номеров спутников.
+ */
+public enum Constellation {
+    GPS(1),
+    GLONASS(2),
+    GALILEO(3),
+    BEIDOU(4),
+    QZSS(5),
+    NAVIC(6),
+    SBAS(0),
+    UNKNOWN(0);
+
+    private static final Constellation[] VALUES = values();
+
+    /**
+     * Номер системы в полях NMEA 4.10 (0 - не определён).
+     */
+    private final int systemId;
+
+    Constellation(int systemId) {
+        this.systemId = systemId;
+    }
+
+    public int getSystemId() {
+        return systemId;
+    }
+
+    /**
+     * @param talker0 первый символ идентификатора источника ("$GPGSV" -> 'G')
+     * @param talker1 второй символ идентификатора источника ("$GPGSV" -> 'P')
+     * @param prn     номер спутника из предложения
+     */
+    public static Constellation of(char talker0, char talker1, int prn) {
+        if (talker0 == 'G') {
+            switch (talker1) {
+                case 'P':
+                    return prn >= 33 && prn <= 64 ? SBAS : ofPrn(prn);
+                case 'L':
+                    return GLONASS;
+                case 'A':
+                    return GALILEO;
+                case 'B':
+                    return BEIDOU;
+                case 'Q':
+                    return QZSS;
+                case 'I':
+                    return NAVIC;
+                default:
+                    return ofPrn(prn);
+            }
+        }
+        if (talker0 == 'B' && talker1 == 'D') {
+            return BEIDOU;
+        }
+        return ofPrn(prn);
+    }
+
+    /**
+     * Система предложения GSA или GSV: по полю System ID (NMEA 4.10, только GSA), идентификатору источника
+     * или, для GN, по номеру первого спутника.
+     *
+     * @return система или {@link #UNKNOWN} для других предложений
+     */
+    public static Constellation of(CharSequence line) {
+        if (line.length() < 6 || line.charAt(3) != 'G' || line.charAt(4) != 'S') {
+            return UNKNOWN;
+        }
+        if (line.charAt(5) == 'A') {
+            int systemId = parseInt(line, 18);
+            return systemId > 0 ? ofSystemId(systemId) : of(line.charAt(1), line.charAt(2), parseInt(line, 3));
+        }
+        if (line.charAt(5) == 'V') {
+            return of(line.charAt(1), line.charAt(2), parseInt(line, 4));
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Система по номеру NMEA 4.10 (поле System ID предложений GSA и GSV).
+     */
+    public static Constellation ofSystemId(int systemId) {
+        for (Constellation constellation : VALUES) {
+            if (constellation.systemId == systemId && systemId != 0) {
+                return constellation;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Система по расширенной нумерации спутников NMEA для общего идентификатора GN.
+     */
+    public static Constellation ofPrn(int prn) {
+        if (prn >= 1 && prn <= 32) {
+            return GPS;
+        }
+        if (prn >= 33 && prn <= 64 || prn >= 120 && prn <= 158) {
+            return SBAS;
+        }
+        if (prn >= 65 && prn <= 99) {
+            return GLONASS;
+        }
+        if (prn >= 193 && prn <= 200) {
+            return QZSS;
+        }
+        if (prn >= 201 && prn <= 263 || prn >= 401 && prn <= 437) {
+            return BEIDOU;
+        }
+        if (prn >= 301 && prn <= 336) {
+            return GALILEO;
+        }
+        return UNKNOWN;
+    }
+}
@@ -1,28 +1,434 @@
 package parser.data;
 
-import net.sf.marineapi.nmea.sentence.Sentence;
+import net.sf.marineapi.nmea.parser.SentenceFactory;
+import net.sf.marineapi.nmea.parser.UnsupportedSentenceException;
+import net.sf.marineapi.nmea.sentence.*;
+import org.jetbrains.annotations.Nullable;
+import parser.sentence.UnknownParser;
 
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
+import static parser.NmeaTokenizer.*;
+
+/**
+ * Запись (пакет) NMEA-файла: исходные строки предложений и извлечённые из них при создании основные значения.
+ * Объекты {@link Sentence} создаются только по запросу через {@link #getSentences()}.
+ * Запись с {@link RecordSource} хранит вместо строк только их положение в файле и читает строки при обращении.
+ */
 public class Record{
 
-    private final String name;
+    private final int number;
+
+    @Nullable
+    private final List<String> lines;
+
+    @Nullable
+    private final RecordSource source;
+    private final long offset;
+    private final int length;
+
+    private static final SentenceId[] INDEXED = {SentenceId.GGA, SentenceId.GSA, SentenceId.GSV, SentenceId.ZDA, SentenceId.RMC, SentenceId.VTG, SentenceId.GLL};
+    private static final int[] SLOTS = new int[SentenceId.values().length];
+
+    static {
+        for (int i = 0; i < INDEXED.length; i++) {
+            SLOTS[INDEXED[i].ordinal()] = i;
+        }
+    }
+
+    /**
+     * Номер строки первого предложения каждого типа из {@link #INDEXED} или {@link parser.NmeaTokenizer#NO_VALUE}.
+     */
+    private final short[] firstIndex = new short[INDEXED.length];
+
+    private int timeMillis = NO_VALUE;
+    private double latitude = Double.NaN;
+    private double longitude = Double.NaN;
+    private double altitude = Double.NaN;
+    private int satelliteCount = NO_VALUE;
+    private double hDOP = Double.NaN;
+    private double vDOP = Double.NaN;
+    private double pDOP = Double.NaN;
+    private long epochDay = Long.MIN_VALUE;
+    private int dateTimeMillis = NO_VALUE;
+    /**
+     * Количество спутников каждой системы, использованных в решении, по {@link #USED_BITS} бит на систему в порядке {@link Constellation}.
+     */
+    private long usedSatellites;
+    /**
+     * Системы, для которых в записи есть GSA или GSV, по биту на систему.
+     */
+    private int constellations;
+
+    private static final int USED_BITS = 6;
+    private static final int MAX_USED = (1 << USED_BITS) - 1;
+    private static final Constellation[] CONSTELLATIONS = Constellation.values();
+
+    public Record(List<String> lines, int number) {
+        this(lines, number, null, 0, 0);
+    }
+
+    /**
+     * @param lines  строки записи; если задан source, используются только для извлечения основных значений и не сохраняются
+     * @param source файл, из которого строки читаются повторно, или null
+     * @param offset смещение записи в файле
+     * @param length длина записи в байтах
+     */
+    public Record(List<String> lines, int number, @Nullable RecordSource source, long offset, int length) {
+        this.number = number;
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+        Arrays.fill(firstIndex, (short) NO_VALUE);
+        for (int i = 0; i < lines.size() && i <= Short.MAX_VALUE; i++) {
+            SentenceId id = sentenceId(lines.get(i));
+            if (id != null) {
+                int slot = SLOTS[id.ordinal()];
+                if (firstIndex[slot] == NO_VALUE) {
+                    firstIndex[slot] = (short) i;
+                }
+                if (id == SentenceId.GSA) {
+                    readGSA(lines.get(i));
+                } else if (id == SentenceId.GSV) {
+                    constellations |= 1 << Constellation.of(lines.get(i)).ordinal();
+                }
+            }
+        }
+        String gga = getLine(lines, SentenceId.GGA);
+        if (gga != null) {
+            readGGA(gga);
+        }
+        String zda = getLine(lines, SentenceId.ZDA);
+        if (zda != null) {
+            readZDA(zda);
+        }
+        String gll = getLine(lines, SentenceId.GLL);
+        if (gll != null) {
+            readGLL(gll);
+        }
+        this.lines = source == null ? lines : null;
+    }
+
+    private void readGGA(String line) {
+        timeMillis = parseTimeMillis(line, 1);
+        double lat = parseCoordinate(line, 2);
+        double lon = parseCoordinate(line, 4);
+        if (!Double.isNaN(lat) && !Double.isNaN(lon)) {
+            latitude = lat;
+            longitude = lon;
+            altitude = parseDouble(line, 9);
+        }
+        satelliteCount = parseInt(line, 7);
+    }
+
+    /**
+     * Предложения GSA приходят по одному на систему (например, несколько $GNGSA подряд):
+     * DOP общего решения берутся из первого предложения, где они есть, спутники считаются по всем.
+     */
+    private void readGSA(String line) {
+        boolean readDOP = !hasDOP();
+        int used = 0;
+        int firstPrn = NO_VALUE;
+        int systemId = NO_VALUE;
+        int start = fieldStart(line, 3);
+        // поля читаются за один проход по строке
+        for (int field = 3; field <= 18 && start != NO_VALUE; field++) {
+            int end = fieldEnd(line, start);
+            if (field <= 14) {
+                int prn = parseInt(line, start, end);
+                if (prn > 0) {
+                    used++;
+                    if (firstPrn == NO_VALUE) {
+                        firstPrn = prn;
+                    }
+                }
+            } else if (field == 18) {
+                systemId = parseInt(line, start, end);
+            } else if (readDOP) {
+                double value = parseDouble(line, start, end);
+                if (field == 15) {
+                    pDOP = value;
+                } else if (field == 16) {
+                    hDOP = value;
+                } else {
+                    vDOP = value;
+                }
+            }
+            start = end < line.length() && line.charAt(end) == ',' ? end + 1 : NO_VALUE;
+        }
+        int constellation = (systemId > 0 ? Constellation.ofSystemId(systemId)
+                : Constellation.of(line.charAt(1), line.charAt(2), firstPrn)).ordinal();
+        int shift = constellation * USED_BITS;
+        long count = Math.min(MAX_USED, ((usedSatellites >>> shift) & MAX_USED) + used);
+        usedSatellites = usedSatellites & ~((long) MAX_USED << shift) | count << shift;
+        constellations |= 1 << constellation;
+    }
+
+    private void readGLL(String line) {
+        if (hasPosition()) {
+            return;
+        }
+        double lat = parseCoordinate(line, 1);
+        double lon = parseCoordinate(line, 3);
+        if (!Double.isNaN(lat) && !Double.isNaN(lon)) {
+            latitude = lat;
+            longitude = lon;
+            altitude = 0;
+        }
+    }
+
+    private void readZDA(String line) {
+        int time = parseTimeMillis(line, 1);
+        int day = parseInt(line, 2);
+        int month = parseInt(line, 3);
+        int year = parseInt(line, 4);
+        if (time == NO_VALUE || time >= 86_400_000 || day == NO_VALUE || month == NO_VALUE || year == NO_VALUE) {
+            return;
+        }
+        try {
+            epochDay = LocalDate.of(year, month, day).toEpochDay();
+            dateTimeMillis = time;
+        } catch (DateTimeException ignored) {
+        }
+    }
+
+    /**
+     * @return строки записи; для записи с {@link RecordSource} читаются из файла
+     */
+    public List<String> getLines() {
+        if (lines != null) {
+            return lines;
+        }
+        return source.lines(offset, length);
+    }
+
+    public int getNumber() {
+        return number;
+    }
 
-    private final List<Sentence> sentences;
+    /**
+     * @return смещение начала записи в файле; 0 для записи без {@link RecordSource}
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return длина записи в байтах файла; 0 для записи без {@link RecordSource}
+     */
+    public int getLength() {
+        return length;
+    }
 
+    /**
+     * @return файл, из которого читаются строки записи, или null, если запись хранит строки
+     */
+    @Nullable
+    public RecordSource getSource() {
+        return source;
+    }
+
+    /**
+     * Создаёт объекты предложений записи. Строки, которые не удалось разобрать, представляются как {@link UnknownParser}.
+     */
     public List<Sentence> getSentences() {
+        List<String> recordLines = getLines();
+        List<Sentence> sentences = new ArrayList<>(recordLines.size());
+        for (String line : recordLines) {
+            sentences.add(createSentence(line));
+        }
         return sentences;
     }
 
-    public Record(List<Sentence> sentences, int number) {
-        this.sentences = sentences;
-        this.name = "Запись " + number;
+    /**
+     * @return строка первого предложения данного типа в записи или null.
+     * Индексируются только типы GGA, GSA, GSV, ZDA, RMC, VTG и GLL
+     */
+    @Nullable
+    public String getLine(SentenceId id) {
+        return hasLine(id) ? getLine(getLines(), id) : null;
+    }
+
+    private boolean hasLine(SentenceId id) {
+        int slot = SLOTS[id.ordinal()];
+        return INDEXED[slot] == id && firstIndex[slot] != NO_VALUE;
+    }
+
+    @Nullable
+    private String getLine(List<String> recordLines, SentenceId id) {
+        return hasLine(id) ? recordLines.get(firstIndex[SLOTS[id.ordinal()]]) : null;
+    }
+
+    /**
+     * @return строки предложений данного типа, относящиеся к системе (например, все GSV ГЛОНАСС эпохи);
+     * система определяется по {@link Constellation#of(CharSequence)}
+     */
+    public List<String> getLines(SentenceId id, Constellation constellation) {
+        List<String> result = new ArrayList<>();
+        if (!hasLine(id) || !hasConstellation(constellation)) {
+            return result;
+        }
+        for (String line : getLines()) {
+            if (sentenceId(line) == id && Constellation.of(line) == constellation) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return системы, для которых в записи есть предложения GSA или GSV
+     */
+    public Set<Constellation> getConstellations() {
+        Set<Constellation> result = EnumSet.noneOf(Constellation.class);
+        for (Constellation constellation : CONSTELLATIONS) {
+            if (hasConstellation(constellation)) {
+                result.add(constellation);
+            }
+        }
+        return result;
+    }
+
+    public boolean hasConstellation(Constellation constellation) {
+        return (constellations & 1 << constellation.ordinal()) != 0;
+    }
+
+    /**
+     * @return количество спутников системы, использованных в решении, по всем предложениям GSA записи
+     */
+    public int getUsedSatelliteCount(Constellation constellation) {
+        return (int) (usedSatellites >>> constellation.ordinal() * USED_BITS) & MAX_USED;
+    }
+
+    @Nullable
+    public Sentence getSentence(SentenceId id) {
+        String line = getLine(id);
+        return line == null ? null : createSentence(line);
+    }
+
+    @Nullable
+    public GGASentence gga() {
+        return typed(SentenceId.GGA, GGASentence.class);
+    }
+
+    @Nullable
+    public GSASentence gsa() {
+        return typed(SentenceId.GSA, GSASentence.class);
+    }
+
+    @Nullable
+    public ZDASentence zda() {
+        return typed(SentenceId.ZDA, ZDASentence.class);
+    }
+
+    @Nullable
+    public GLLSentence gll() {
+        return typed(SentenceId.GLL, GLLSentence.class);
+    }
+
+    @Nullable
+    public RMCSentence rmc() {
+        return typed(SentenceId.RMC, RMCSentence.class);
+    }
+
+    @Nullable
+    public VTGSentence vtg() {
+        return typed(SentenceId.VTG, VTGSentence.class);
+    }
+
+    @Nullable
+    private <T extends Sentence> T typed(SentenceId id, Class<T> type) {
+        Sentence sentence = getSentence(id);
+        return type.isInstance(sentence) ? type.cast(sentence) : null;
+    }
+
+    private static Sentence createSentence(String line) {
+        try {
+            return SentenceFactory.getInstance().createParser(line);
+        } catch (UnsupportedSentenceException | IllegalArgumentException | IllegalStateException e) {
+            return new UnknownParser(line);
+        }
+    }
+
+    public boolean hasPosition() {
+        return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+    }
+
+    public boolean hasDOP() {
+        return !Double.isNaN(hDOP) && !Double.isNaN(vDOP) && !Double.isNaN(pDOP);
+    }
+
+    public boolean hasDateTime() {
+        return dateTimeMillis != NO_VALUE;
+    }
+
+    /**
+     * @return время UTC из GGA в миллисекундах с начала суток или {@link parser.NmeaTokenizer#NO_VALUE}
+     */
+    public int getTimeMillis() {
+        return timeMillis;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public double getAltitude() {
+        return altitude;
+    }
+
+    public int getSatelliteCount() {
+        return satelliteCount;
+    }
+
+    public double getHDOP() {
+        return hDOP;
+    }
+
+    public double getVDOP() {
+        return vDOP;
+    }
+
+    public double getPDOP() {
+        return pDOP;
+    }
+
+    /**
+     * @return дата и время UTC из ZDA в миллисекундах от начала эпохи или {@link Long#MIN_VALUE}
+     */
+    public long getEpochMillis() {
+        if (!hasDateTime()) {
+            return Long.MIN_VALUE;
+        }
+        return epochDay * 86_400_000L + dateTimeMillis;
+    }
+
+    /**
+     * @return дата и время из ZDA с точностью до секунды
+     */
+    @Nullable
+    public LocalDateTime getDateTime() {
+        if (!hasDateTime()) {
+            return null;
+        }
+        return LocalDateTime.of(LocalDate.ofEpochDay(epochDay), LocalTime.ofSecondOfDay(dateTimeMillis / 1000));
     }
 
     @Override
     public String toString() {
-        return name;
+        return "Запись " + number;
     }
 
 }
-
@@ -0,0 +1,51 @@
+package parser.data;
+
+import java.util.Collection;
+
+/**
+ * Кольцевой буфер фиксированной ёмкости для передачи записей из потока чтения в интерфейс.
+ * Если интерфейс не успевает забирать записи, самые старые перезаписываются, их количество учитывается в {@link #getDropped()}.
+ */
+public class RecordRingBuffer {
+
+    private final Record[] records;
+    private int head;
+    private int size;
+    private long dropped;
+
+    public RecordRingBuffer(int capacity) {
+        this.records = new Record[capacity];
+    }
+
+    public synchronized void offer(Record record) {
+        int tail = (head + size) % records.length;
+        records[tail] = record;
+        if (size == records.length) {
+            head = (head + 1) % records.length;
+            dropped++;
+        } else {
+            size++;
+        }
+    }
+
+    /**
+     * Переносит все накопленные записи в target в порядке поступления.
+     *
+     * @return количество перенесённых записей
+     */
+    public synchronized int drainTo(Collection<? super Record> target) {
+        int count = size;
+        for (int i = 0; i < count; i++) {
+            int index = (head + i) % records.length;
+            target.add(records[index]);
+            records[index] = null;
+        }
+        head = 0;
+        size = 0;
+        return count;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+}
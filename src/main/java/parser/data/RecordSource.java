@@ -0,0 +1,126 @@
+package parser.data;
+
+import parser.ValidationPolicy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Исходный файл записей, которые не хранят свои строки ({@link Record#Record(List, int, RecordSource, long, int)}).
+ * Строки записи читаются из файла по смещению при обращении, строки недавно просмотренных записей хранятся в LRU-кэше.
+ * Строки проверяются по тому же {@link ValidationPolicy}, что и при разборе, иначе положение предложений в записи не совпадёт.
+ */
+public class RecordSource {
+
+    public static final int DEFAULT_CACHE_SIZE = 128;
+
+    private final File file;
+    private final ValidationPolicy policy;
+    /**
+     * Ключ - смещение и длина: после перезаписи файла по тому же смещению может начинаться другая запись.
+     */
+    private final Map<Range, List<String>> cache;
+
+    public RecordSource(File file) {
+        this(file, ValidationPolicy.DEFAULT);
+    }
+
+    public RecordSource(File file, ValidationPolicy policy) {
+        this(file, policy, DEFAULT_CACHE_SIZE);
+    }
+
+    public RecordSource(File file, ValidationPolicy policy, int cacheSize) {
+        this.file = file;
+        this.policy = policy;
+        this.cache = new LinkedHashMap<Range, List<String>>(cacheSize * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Range, List<String>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return непустые строки, занимающие байты [offset, offset + length) файла
+     * @throws UncheckedIOException если файл не удалось прочитать
+     */
+    public List<String> lines(long offset, int length) {
+        Range range = new Range(offset, length);
+        synchronized (cache) {
+            List<String> lines = cache.get(range);
+            if (lines != null) {
+                return lines;
+            }
+        }
+        List<String> lines = Collections.unmodifiableList(read(offset, length));
+        synchronized (cache) {
+            cache.put(range, lines);
+        }
+        return lines;
+    }
+
+    private List<String> read(long offset, int length) {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (bytes.hasRemaining() && channel.read(bytes, offset + bytes.position()) >= 0) {
+                // чтение до заполнения буфера
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return splitLines(bytes.array(), 0, bytes.position());
+    }
+
+    /**
+     * Делит байты [offset, offset + length) на строки так же, как они делятся при разборе файла:
+     * пустые строки и строки, отбрасываемые правилом проверки, пропускаются.
+     */
+    public List<String> splitLines(byte[] bytes, int offset, int length) {
+        String text = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        List<String> lines = new ArrayList<>();
+        for (String line : text.split("\r\n|\r|\n")) {
+            if (!line.isEmpty() && policy.accepts(line)) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static final class Range {
+        private final long offset;
+        private final int length;
+
+        Range(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Range)) {
+                return false;
+            }
+            Range range = (Range) o;
+            return offset == range.offset && length == range.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(offset) * 31 + length;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package parser.data;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Индекс записей по времени ZDA для быстрого поиска по интервалу.
+ * Время каждой записи хранится в массиве миллисекунд UTC; записи без ZDA получают время предыдущей записи,
+ * поэтому для упорядоченного по времени файла интервал находится двоичным поиском и возвращается как представление исходного списка.
+ */
+public class RecordTimeIndex {
+
+    private final List<Record> records;
+    private final long[] epochMillis;
+    private final boolean sorted;
+    /**
+     * Записи без ZDA; в неупорядоченном файле они не попадают ни в один интервал.
+     */
+    private final BitSet withoutTime = new BitSet();
+
+    public RecordTimeIndex(List<Record> records) {
+        this(records, records.stream().mapToLong(Record::getEpochMillis).toArray());
+    }
+
+    /**
+     * @param records           записи
+     * @param recordEpochMillis время ZDA каждой записи ({@link Record#getEpochMillis()}), например из кэша; массив заполняется индексом
+     */
+    public RecordTimeIndex(List<Record> records, long[] recordEpochMillis) {
+        this.records = records;
+        this.epochMillis = recordEpochMillis;
+        long previous = Long.MIN_VALUE;
+        boolean isSorted = true;
+        for (int i = 0; i < epochMillis.length; i++) {
+            long time = epochMillis[i];
+            if (time == Long.MIN_VALUE) {
+                withoutTime.set(i);
+                time = previous;
+            } else if (time < previous) {
+                isSorted = false;
+            }
+            epochMillis[i] = time;
+            previous = time;
+        }
+        this.sorted = isSorted;
+    }
+
+    /**
+     * @param from начало интервала (включительно), UTC
+     * @param to   конец интервала (не включительно), UTC
+     * @return записи интервала в виде представления исходного списка без копирования записей
+     */
+    public List<Record> between(LocalDateTime from, LocalDateTime to) {
+        long fromMillis = from.toInstant(ZoneOffset.UTC).toEpochMilli();
+        long toMillis = to.toInstant(ZoneOffset.UTC).toEpochMilli();
+        if (!sorted) {
+            int[] indices = IntStream.range(0, epochMillis.length)
+                    .filter(i -> !withoutTime.get(i) && epochMillis[i] >= fromMillis && epochMillis[i] < toMillis)
+                    .toArray();
+            return new AbstractList<Record>() {
+                @Override
+                public Record get(int index) {
+                    return records.get(indices[index]);
+                }
+
+                @Override
+                public int size() {
+                    return indices.length;
+                }
+            };
+        }
+        int fromIndex = lowerBound(fromMillis);
+        int toIndex = Math.max(fromIndex, lowerBound(toMillis));
+        return records.subList(fromIndex, toIndex);
+    }
+
+    /**
+     * @return индекс первой записи со временем не меньше millis
+     */
+    private int lowerBound(long millis) {
+        int low = 0;
+        int high = epochMillis.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (epochMillis[middle] < millis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
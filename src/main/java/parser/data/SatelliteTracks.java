@@ -0,0 +1,349 @@
+package parser.data;
+
+import net.sf.marineapi.nmea.sentence.SentenceId;
+import org.jetbrains.annotations.Nullable;
+import parser.RecordIterator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static parser.NmeaTokenizer.*;
+
+/**
+ * Временные ряды отдельных спутников по предложениям GSV и GSA: угол места, азимут, отношение сигнал/шум
+ * и участие в решении для каждой записи, в которой спутник виден.
+ * Ряды хранятся в массивах примитивов по системе и номеру спутника и пополняются по одной записи ({@link #add(Record)}),
+ * поэтому файл просматривается один раз, а в режиме реального времени ряды растут по мере поступления записей.
+ * Время записи берётся из ZDA; для записи без ZDA - время GGA с датой предыдущей записи.
+ */
+public class SatelliteTracks {
+
+    private static final int MAX_PRN = 1024;
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    /**
+     * Ряд одного спутника, упорядоченный по времени. Отсутствующие азимут и отношение сигнал/шум хранятся как
+     * {@link parser.NmeaTokenizer#NO_VALUE}, отсутствующий угол места - как {@link #NO_ELEVATION}.
+     */
+    public static class Series {
+        /**
+         * Угол места не указан: -1 - допустимый угол места, поэтому берётся значение вне [-90, 90].
+         */
+        public static final int NO_ELEVATION = Byte.MIN_VALUE;
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final Constellation constellation;
+        private final int prn;
+        private int size;
+        private long[] time = new long[INITIAL_CAPACITY];
+        private byte[] elevation = new byte[INITIAL_CAPACITY];
+        private short[] azimuth = new short[INITIAL_CAPACITY];
+        private byte[] snr = new byte[INITIAL_CAPACITY];
+        private final BitSet used = new BitSet();
+
+        Series(Constellation constellation, int prn) {
+            this.constellation = constellation;
+            this.prn = prn;
+        }
+
+        void add(long epochMillis, int elevationDegrees, int azimuthDegrees, int snrDb, boolean isUsed) {
+            if (size > 0 && time[size - 1] == epochMillis) {
+                // спутник повторяется в записи для другого сигнала: остаётся наибольшее отношение сигнал/шум
+                if (snrDb > snr[size - 1] && snrDb <= Byte.MAX_VALUE) {
+                    snr[size - 1] = (byte) snrDb;
+                }
+                used.set(size - 1, used.get(size - 1) || isUsed);
+                return;
+            }
+            if (size == time.length) {
+                int capacity = size * 2;
+                time = Arrays.copyOf(time, capacity);
+                elevation = Arrays.copyOf(elevation, capacity);
+                azimuth = Arrays.copyOf(azimuth, capacity);
+                snr = Arrays.copyOf(snr, capacity);
+            }
+            time[size] = epochMillis;
+            elevation[size] = (byte) (elevationDegrees >= -90 && elevationDegrees <= 90 ? elevationDegrees : NO_ELEVATION);
+            azimuth[size] = (short) (azimuthDegrees >= 0 && azimuthDegrees < 360 ? azimuthDegrees : NO_VALUE);
+            snr[size] = (byte) (snrDb >= 0 && snrDb <= Byte.MAX_VALUE ? snrDb : NO_VALUE);
+            used.set(size, isUsed);
+            size++;
+        }
+
+        public Constellation getConstellation() {
+            return constellation;
+        }
+
+        public int getPrn() {
+            return prn;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getTime(int i) {
+            return time[i];
+        }
+
+        /**
+         * @return угол места в градусах или {@link #NO_ELEVATION}, если он не указан
+         */
+        public int getElevation(int i) {
+            return elevation[i];
+        }
+
+        public int getAzimuth(int i) {
+            return azimuth[i];
+        }
+
+        /**
+         * @return отношение сигнал/шум (C/N0), дБГц, или {@link parser.NmeaTokenizer#NO_VALUE}, если спутник не отслеживается
+         */
+        public int getSnr(int i) {
+            return snr[i];
+        }
+
+        public boolean isUsed(int i) {
+            return used.get(i);
+        }
+
+        /**
+         * @return индекс первого значения со временем не раньше time
+         */
+        public int indexOf(long time) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (this.time[mid] < time) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * @return время значений интервала [from, to)
+         */
+        public long[] timesBetween(long from, long to) {
+            return Arrays.copyOfRange(time, indexOf(from), Math.max(indexOf(from), indexOf(to)));
+        }
+
+        /**
+         * @return отношение сигнал/шум в интервале [from, to), по одному значению на время из {@link #timesBetween(long, long)}
+         */
+        public int[] snrBetween(long from, long to) {
+            int start = indexOf(from);
+            int end = Math.max(start, indexOf(to));
+            int[] result = new int[end - start];
+            for (int i = start; i < end; i++) {
+                result[i - start] = snr[i];
+            }
+            return result;
+        }
+
+        void trim() {
+            time = Arrays.copyOf(time, size);
+            elevation = Arrays.copyOf(elevation, size);
+            azimuth = Arrays.copyOf(azimuth, size);
+            snr = Arrays.copyOf(snr, size);
+        }
+
+        @Override
+        public String toString() {
+            return constellation + " " + prn + " (" + size + ")";
+        }
+    }
+
+    private final Map<Integer, Series> series = new HashMap<>();
+    /**
+     * Спутники, использованные в решении текущей записи, по ключу {@link #key(Constellation, int)}.
+     */
+    private final BitSet usedInRecord = new BitSet();
+    private final List<String> satelliteLines = new ArrayList<>();
+    private long lastEpochDay;
+    private long lastTime = Long.MIN_VALUE;
+    private boolean sorted = true;
+
+    /**
+     * Строит ряды по всем записям NMEA-файла за один проход, строки записей не сохраняются.
+     */
+    public static SatelliteTracks of(File nmeaFile) throws IOException {
+        SatelliteTracks tracks = new SatelliteTracks();
+        try (RecordIterator iterator = new RecordIterator(nmeaFile)) {
+            iterator.forEachRemaining(tracks::add);
+        }
+        tracks.trim();
+        return tracks;
+    }
+
+    public static SatelliteTracks of(Iterable<Record> records) {
+        SatelliteTracks tracks = new SatelliteTracks();
+        records.forEach(tracks::add);
+        tracks.trim();
+        return tracks;
+    }
+
+    /**
+     * Добавляет значения спутников из предложений GSV и GSA записи. Записи без времени пропускаются.
+     * Для записи с {@link RecordSource} строки читаются из файла.
+     */
+    public void add(Record record) {
+        long time = record.getEpochMillis();
+        if (time != Long.MIN_VALUE) {
+            lastEpochDay = Math.floorDiv(time, DAY_MILLIS);
+        } else if (record.getTimeMillis() != NO_VALUE) {
+            time = lastEpochDay * DAY_MILLIS + record.getTimeMillis();
+        } else {
+            return;
+        }
+        if (record.getLine(SentenceId.GSV) == null) {
+            return;
+        }
+        add(record.getLines(), time);
+    }
+
+    /**
+     * Добавляет значения спутников из строк одной эпохи.
+     *
+     * @param epochMillis время эпохи, UTC
+     */
+    public void add(List<String> lines, long epochMillis) {
+        usedInRecord.clear();
+        satelliteLines.clear();
+        for (String line : lines) {
+            if (isSentence(line, "GSA")) {
+                readGSA(line);
+            } else if (isSentence(line, "GSV")) {
+                satelliteLines.add(line);
+            }
+        }
+        if (epochMillis < lastTime) {
+            sorted = false;
+        }
+        lastTime = epochMillis;
+        for (String line : satelliteLines) {
+            readGSV(line, epochMillis);
+        }
+    }
+
+    /**
+     * Поля 3-14 - номера спутников, использованных в решении, поле 18 (NMEA 4.10) - номер системы.
+     */
+    private void readGSA(String line) {
+        int systemId = parseInt(line, 18);
+        int start = fieldStart(line, 3);
+        for (int field = 3; field <= 14 && start != NO_VALUE; field++) {
+            int end = fieldEnd(line, start);
+            int prn = parseInt(line, start, end);
+            if (prn > 0 && prn < MAX_PRN) {
+                Constellation constellation = systemId > 0
+                        ? Constellation.ofSystemId(systemId) : Constellation.of(line.charAt(1), line.charAt(2), prn);
+                usedInRecord.set(key(constellation, prn));
+            }
+            start = end < line.length() && line.charAt(end) == ',' ? end + 1 : NO_VALUE;
+        }
+    }
+
+    /**
+     * С поля 4 идут группы из четырёх полей: номер спутника, угол места, азимут, отношение сигнал/шум.
+     * Необязательное последнее поле NMEA 4.10 (номер сигнала) группу не образует.
+     */
+    private void readGSV(String line, long epochMillis) {
+        int[] fields = new int[4];
+        int start = fieldStart(line, 4);
+        while (start != NO_VALUE) {
+            int filled = 0;
+            while (filled < 4 && start != NO_VALUE) {
+                fields[filled++] = start;
+                int end = fieldEnd(line, start);
+                start = end < line.length() && line.charAt(end) == ',' ? end + 1 : NO_VALUE;
+            }
+            if (filled < 4) {
+                return;
+            }
+            int prn = parseInt(line, fields[0], fieldEnd(line, fields[0]));
+            if (prn <= 0 || prn >= MAX_PRN) {
+                continue;
+            }
+            Constellation constellation = Constellation.of(line.charAt(1), line.charAt(2), prn);
+            int key = key(constellation, prn);
+            Series satellite = series.computeIfAbsent(key, x -> new Series(constellation, prn));
+            satellite.add(epochMillis, parseInt(line, fields[1], fieldEnd(line, fields[1])),
+                    parseInt(line, fields[2], fieldEnd(line, fields[2])), parseInt(line, fields[3], fieldEnd(line, fields[3])),
+                    usedInRecord.get(key));
+        }
+    }
+
+    private static int key(Constellation constellation, int prn) {
+        return constellation.ordinal() * MAX_PRN + prn;
+    }
+
+    /**
+     * Освобождает неиспользуемую ёмкость массивов после заполнения.
+     */
+    public void trim() {
+        series.values().forEach(Series::trim);
+    }
+
+    /**
+     * @return ряд спутника или null, если спутник не встречался
+     */
+    @Nullable
+    public Series get(Constellation constellation, int prn) {
+        return prn > 0 && prn < MAX_PRN ? series.get(key(constellation, prn)) : null;
+    }
+
+    public Collection<Series> getAll() {
+        return Collections.unmodifiableCollection(series.values());
+    }
+
+    /**
+     * Запросы по интервалу времени используют двоичный поиск и верны, только если записи добавлялись по возрастанию времени.
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Среднее отношение сигнал/шум спутников системы по интервалам, например по минутам (interval = 60 000).
+     *
+     * @param from     начало, UTC (включительно); интервалы отсчитываются от него
+     * @param to       конец, UTC (не включительно)
+     * @param interval длительность интервала в миллисекундах
+     * @return среднее значение по каждому интервалу, {@link Double#NaN} для интервалов без значений
+     */
+    public double[] meanSnr(Constellation constellation, long from, long to, long interval) {
+        int count = (int) Math.max(0, (to - from + interval - 1) / interval);
+        double[] sums = new double[count];
+        int[] counts = new int[count];
+        for (Series satellite : series.values()) {
+            if (satellite.constellation != constellation) {
+                continue;
+            }
+            for (int i = satellite.indexOf(from); i < satellite.size && satellite.time[i] < to; i++) {
+                int value = satellite.snr[i];
+                if (value != NO_VALUE) {
+                    int bucket = (int) ((satellite.time[i] - from) / interval);
+                    sums[bucket] += value;
+                    counts[bucket]++;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            sums[i] = counts[i] == 0 ? Double.NaN : sums[i] / counts[i];
+        }
+        return sums;
+    }
+}
@@ -0,0 +1,268 @@
+package parser.data;
+
+import parser.GeodeticConverter;
+
+import java.util.Arrays;
+
+import static parser.Constants.WGS84az;
+import static parser.Constants.WGS84e1;
+
+/**
+ * Пространственный индекс эпох трека для запросов по прямоугольнику широт и долгот и по расстоянию от точки.
+ * Эпохи раскладываются по ячейкам равномерной сетки со стороной в метрах (долгота масштабируется по средней широте трека),
+ * так чтобы в ячейке в среднем было {@link #POINTS_PER_CELL} точек. Координаты и номера эпох хранятся в массивах,
+ * упорядоченных по ячейкам (сортировка подсчётом), поэтому запрос просматривает только ячейки, пересекающие область,
+ * и его время зависит от количества точек рядом с областью, а не от длины трека.
+ * Треки, пересекающие 180-й меридиан, не поддерживаются.
+ */
+public class SpatialIndex {
+
+    private static final double METERS_PER_DEGREE = Math.PI / 180 * 6_371_008.8;
+    /**
+     * Запас для отбора ячеек: длина градуса меридиана на эллипсоиде отличается от сферы меньше чем на 1 %.
+     */
+    private static final double RADIUS_MARGIN = 1.01;
+    private static final int POINTS_PER_CELL = 8;
+    private static final int MAX_CELLS = 1 << 22;
+    private static final double MIN_CELL_METERS = 0.01;
+    private static final double MIN_COS_LATITUDE = 0.01;
+    /**
+     * Относительная погрешность квадрата расстояния по локальным радиусам кривизны не больше (d / a) * (1 + |tg широты|);
+     * оценка берётся с запасом, точки в её пределах от границы проверяются в ENU.
+     */
+    private static final double LOCAL_TOLERANCE_FACTOR = 4;
+    private static final double E2 = WGS84e1 * WGS84e1;
+
+    private final TrackColumns track;
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double cellLatitude;
+    private final double cellLongitude;
+    private final int columns;
+    private final int rows;
+    /**
+     * Точки ячейки c занимают индексы [cellStart[c], cellStart[c + 1]) массивов latitude, longitude и epochs.
+     */
+    private final int[] cellStart;
+    private final double[] latitude;
+    private final double[] longitude;
+    private final int[] epochs;
+
+    private SpatialIndex(TrackColumns track, double minLatitude, double minLongitude, double cellLatitude, double cellLongitude,
+                         int columns, int rows, int size) {
+        this.track = track;
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.cellLatitude = cellLatitude;
+        this.cellLongitude = cellLongitude;
+        this.columns = columns;
+        this.rows = rows;
+        this.cellStart = new int[columns * rows + 1];
+        this.latitude = new double[size];
+        this.longitude = new double[size];
+        this.epochs = new int[size];
+    }
+
+    /**
+     * Строит индекс по эпохам трека с известными координатами. Номера эпох в результатах запросов - индексы track.
+     */
+    public static SpatialIndex of(TrackColumns track) {
+        int size = 0;
+        double minLat = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < track.size(); i++) {
+            double lat = track.getLatitude(i);
+            double lon = track.getLongitude(i);
+            if (!Double.isNaN(lat) && !Double.isNaN(lon)) {
+                size++;
+                minLat = Math.min(minLat, lat);
+                maxLat = Math.max(maxLat, lat);
+                minLon = Math.min(minLon, lon);
+                maxLon = Math.max(maxLon, lon);
+            }
+        }
+        if (size == 0) {
+            return new SpatialIndex(track, 0, 0, 1, 1, 1, 1, 0);
+        }
+        double cos = Math.max(MIN_COS_LATITUDE, Math.cos(Math.toRadians((minLat + maxLat) / 2)));
+        double width = (maxLon - minLon) * METERS_PER_DEGREE * cos;
+        double height = (maxLat - minLat) * METERS_PER_DEGREE;
+        int cells = Math.max(1, Math.min(MAX_CELLS, size / POINTS_PER_CELL));
+        double cellMeters = width > 0 && height > 0 ? Math.sqrt(width * height / cells) : Math.max(width, height) / cells;
+        cellMeters = Math.max(MIN_CELL_METERS, cellMeters);
+        while (((long) (width / cellMeters) + 1) * ((long) (height / cellMeters) + 1) > MAX_CELLS) {
+            cellMeters *= 2;
+        }
+        int columns = (int) (width / cellMeters) + 1;
+        int rows = (int) (height / cellMeters) + 1;
+        SpatialIndex index = new SpatialIndex(track, minLat, minLon, cellMeters / METERS_PER_DEGREE,
+                cellMeters / (METERS_PER_DEGREE * cos), columns, rows, size);
+        index.fill();
+        return index;
+    }
+
+    private void fill() {
+        int[] cellOf = new int[track.size()];
+        for (int i = 0; i < track.size(); i++) {
+            double lat = track.getLatitude(i);
+            double lon = track.getLongitude(i);
+            if (Double.isNaN(lat) || Double.isNaN(lon)) {
+                cellOf[i] = -1;
+            } else {
+                cellOf[i] = row(lat) * columns + column(lon);
+                cellStart[cellOf[i] + 1]++;
+            }
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] next = Arrays.copyOf(cellStart, columns * rows);
+        for (int i = 0; i < cellOf.length; i++) {
+            int cell = cellOf[i];
+            if (cell >= 0) {
+                int position = next[cell]++;
+                latitude[position] = track.getLatitude(i);
+                longitude[position] = track.getLongitude(i);
+                epochs[position] = i;
+            }
+        }
+    }
+
+    private int row(double lat) {
+        return clamp((int) Math.floor((lat - minLatitude) / cellLatitude), rows);
+    }
+
+    private int column(double lon) {
+        return clamp((int) Math.floor((lon - minLongitude) / cellLongitude), columns);
+    }
+
+    private static int clamp(int value, int count) {
+        return Math.max(0, Math.min(count - 1, value));
+    }
+
+    public TrackColumns getTrack() {
+        return track;
+    }
+
+    /**
+     * @return количество эпох с известными координатами
+     */
+    public int size() {
+        return epochs.length;
+    }
+
+    /**
+     * @return номера эпох внутри прямоугольника (границы включаются) по возрастанию
+     */
+    public int[] inBox(double minLat, double minLon, double maxLat, double maxLon) {
+        Hits hits = new Hits();
+        collect(minLat, minLon, maxLat, maxLon, hits);
+        return hits.sorted();
+    }
+
+    /**
+     * Эпохи на расстоянии не больше meters от точки по горизонтали, например вокруг пункта съёмочной сети.
+     * Расстояние считается в локальной системе ENU точки ({@link GeodeticConverter.Reference}) на поверхности эллипсоида;
+     * большинство точек отбирается по радиусам кривизны эллипсоида в точке, пересчёт в ENU нужен только у границы круга.
+     *
+     * @return номера эпох по возрастанию
+     */
+    public int[] withinRadius(double lat, double lon, double meters) {
+        double sin = Math.sin(Math.toRadians(lat));
+        double cos = Math.max(MIN_COS_LATITUDE, Math.cos(Math.toRadians(lat)));
+        double dLat = meters * RADIUS_MARGIN / METERS_PER_DEGREE;
+        double dLon = meters * RADIUS_MARGIN / (METERS_PER_DEGREE * cos);
+        Hits candidates = new Hits();
+        collect(lat - dLat, lon - dLon, lat + dLat, lon + dLon, candidates);
+        double w = 1 - E2 * sin * sin;
+        double northPerDegree = Math.toRadians(WGS84az * (1 - E2) / (w * Math.sqrt(w)));
+        double eastPerDegree = Math.toRadians(WGS84az / Math.sqrt(w) * cos);
+        double limit = meters * meters;
+        double tolerance = LOCAL_TOLERANCE_FACTOR * meters / WGS84az * (1 + Math.abs(sin) / cos) + 1e-9;
+        GeodeticConverter.Reference reference = null;
+        double[] enu = new double[3];
+        Hits hits = new Hits();
+        for (int i = 0; i < candidates.size; i++) {
+            int position = candidates.values[i];
+            double north = (latitude[position] - lat) * northPerDegree;
+            double east = (longitude[position] - lon) * eastPerDegree;
+            double distance = north * north + east * east;
+            if (Math.abs(distance - limit) <= tolerance * limit) {
+                if (reference == null) {
+                    reference = new GeodeticConverter.Reference(lat, lon, 0);
+                }
+                reference.toEnu(latitude[position], longitude[position], 0, enu);
+                distance = enu[0] * enu[0] + enu[1] * enu[1];
+            }
+            if (distance <= limit) {
+                hits.add(position);
+            }
+        }
+        return hits.sorted();
+    }
+
+    /**
+     * Точки для отображения области карты: если в прямоугольнике больше maxPoints эпох, берётся каждая k-я в порядке ячеек,
+     * поэтому прореженные точки распределены по области так же, как все.
+     *
+     * @return номера эпох, не больше maxPoints
+     */
+    public int[] sample(double minLat, double minLon, double maxLat, double maxLon, int maxPoints) {
+        Hits hits = new Hits();
+        collect(minLat, minLon, maxLat, maxLon, hits);
+        int step = Math.max(1, (hits.size + maxPoints - 1) / Math.max(1, maxPoints));
+        int[] result = new int[(hits.size + step - 1) / step];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = epochs[hits.values[i * step]];
+        }
+        return result;
+    }
+
+    /**
+     * Добавляет в hits положения (индексы в массивах индекса) точек прямоугольника.
+     */
+    private void collect(double minLat, double minLon, double maxLat, double maxLon, Hits hits) {
+        if (epochs.length == 0 || !(minLat <= maxLat) || !(minLon <= maxLon)) {
+            return;
+        }
+        int firstRow = row(minLat);
+        int lastRow = row(maxLat);
+        int firstColumn = column(minLon);
+        int lastColumn = column(maxLon);
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int cell = r * columns + c;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    double lat = latitude[i];
+                    double lon = longitude[i];
+                    if (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon) {
+                        hits.add(i);
+                    }
+                }
+            }
+        }
+    }
+
+    private final class Hits {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+
+        int[] sorted() {
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = epochs[values[i]];
+            }
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package parser.data;
+
+import org.jetbrains.annotations.Nullable;
+import parser.GeodeticConverter;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static parser.NmeaTokenizer.NO_VALUE;
+
+/**
+ * Поколоночное хранилище трека: значения каждой эпохи лежат в параллельных массивах примитивов
+ * вместо отдельного объекта {@link parser.PacketParser.InfoDTO} / {@link parser.PacketParser.ConvertedDTO} на точку.
+ * Отсутствующие значения хранятся как {@link Double#NaN}, {@link parser.NmeaTokenizer#NO_VALUE} и {@link Long#MIN_VALUE} для времени.
+ */
+public class TrackColumns {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private double[] latitude;
+    private double[] longitude;
+    private double[] altitude;
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private float[] hDOP;
+    private float[] vDOP;
+    private float[] pDOP;
+    private long[] epochMillis;
+    private int[] satelliteCount;
+
+    public TrackColumns() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TrackColumns(int capacity) {
+        latitude = new double[capacity];
+        longitude = new double[capacity];
+        altitude = new double[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        z = new double[capacity];
+        hDOP = new float[capacity];
+        vDOP = new float[capacity];
+        pDOP = new float[capacity];
+        epochMillis = new long[capacity];
+        satelliteCount = new int[capacity];
+    }
+
+    /**
+     * Собирает колонки из всех записей, для которых известны координаты.
+     */
+    public static TrackColumns of(Stream<Record> records) {
+        TrackColumns columns = new TrackColumns();
+        records.filter(Record::hasPosition).forEach(columns::add);
+        columns.trim();
+        return columns;
+    }
+
+    public void add(Record record) {
+        add(record.getLatitude(), record.getLongitude(), record.getAltitude(), record.getEpochMillis(),
+                record.getHDOP(), record.getVDOP(), record.getPDOP(), record.getSatelliteCount());
+    }
+
+    public void add(double lat, double lon, double alt, long time, double h, double v, double p, int satellites) {
+        if (size == latitude.length) {
+            grow();
+        }
+        latitude[size] = lat;
+        longitude[size] = lon;
+        altitude[size] = alt;
+        epochMillis[size] = time;
+        hDOP[size] = (float) h;
+        vDOP[size] = (float) v;
+        pDOP[size] = (float) p;
+        satelliteCount[size] = satellites;
+        GeodeticConverter.toEcef(lat, lon, Double.isNaN(alt) ? 0 : alt, x, y, z, size);
+        size++;
+    }
+
+    private void grow() {
+        int capacity = Math.max(INITIAL_CAPACITY, latitude.length + (latitude.length >> 1));
+        resize(capacity);
+    }
+
+    public void trim() {
+        if (size != latitude.length) {
+            resize(size);
+        }
+    }
+
+    private void resize(int capacity) {
+        latitude = Arrays.copyOf(latitude, capacity);
+        longitude = Arrays.copyOf(longitude, capacity);
+        altitude = Arrays.copyOf(altitude, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        hDOP = Arrays.copyOf(hDOP, capacity);
+        vDOP = Arrays.copyOf(vDOP, capacity);
+        pDOP = Arrays.copyOf(pDOP, capacity);
+        epochMillis = Arrays.copyOf(epochMillis, capacity);
+        satelliteCount = Arrays.copyOf(satelliteCount, capacity);
+    }
+
+    /**
+     * Локальные координаты всех эпох в метрах относительно опорной точки (широта и долгота в градусах).
+     * Массивы результата должны вмещать {@link #size()} значений.
+     */
+    public void toEnu(double refLatitude, double refLongitude, double refAltitude, double[] east, double[] north, double[] up) {
+        GeodeticConverter.toEnu(latitude, longitude, altitude, size, refLatitude, refLongitude, refAltitude, east, north, up);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean hasDOP(int i) {
+        return !Float.isNaN(hDOP[i]) && !Float.isNaN(vDOP[i]) && !Float.isNaN(pDOP[i]);
+    }
+
+    public boolean hasTime(int i) {
+        return epochMillis[i] != Long.MIN_VALUE;
+    }
+
+    /**
+     * Эпоха содержит все значения, которые раньше требовались для создания {@link parser.PacketParser.InfoDTO}.
+     */
+    public boolean isComplete(int i) {
+        return hasDOP(i) && hasTime(i) && !Double.isNaN(altitude[i]) && satelliteCount[i] != NO_VALUE;
+    }
+
+    public double getLatitude(int i) {
+        return latitude[i];
+    }
+
+    public double getLongitude(int i) {
+        return longitude[i];
+    }
+
+    public double getAltitude(int i) {
+        return altitude[i];
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getZ(int i) {
+        return z[i];
+    }
+
+    public float getHDOP(int i) {
+        return hDOP[i];
+    }
+
+    public float getVDOP(int i) {
+        return vDOP[i];
+    }
+
+    public float getPDOP(int i) {
+        return pDOP[i];
+    }
+
+    public long getEpochMillis(int i) {
+        return epochMillis[i];
+    }
+
+    public int getSatelliteCount(int i) {
+        return satelliteCount[i];
+    }
+
+    @Nullable
+    public LocalDateTime getDateTime(int i) {
+        if (!hasTime(i)) {
+            return null;
+        }
+        long millis = epochMillis[i];
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Представление полных эпох в виде списка {@link PositionWithTime} для расчёта разностей с эталонным треком.
+     * Объекты создаются при обращении к элементу и не хранятся.
+     */
+    public List<PositionWithTime> asPositionList() {
+        int[] indexes = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (isComplete(i)) {
+                indexes[count++] = i;
+            }
+        }
+        int[] complete = Arrays.copyOf(indexes, count);
+        return new AbstractList<PositionWithTime>() {
+            @Override
+            public PositionWithTime get(int index) {
+                return new Point(complete[index]);
+            }
+
+            @Override
+            public int size() {
+                return complete.length;
+            }
+        };
+    }
+
+    private class Point implements PositionWithTime {
+
+        private final int index;
+
+        private Point(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public double getLongitude() {
+            return longitude[index];
+        }
+
+        @Override
+        public double getLatitude() {
+            return latitude[index];
+        }
+
+        @Override
+        public double getAltitude() {
+            return altitude[index];
+        }
+
+        @Override
+        public LocalTime getTime() {
+            long millisOfDay = Math.floorMod(epochMillis[index], 86_400_000L);
+            return LocalTime.ofNanoOfDay(millisOfDay * 1_000_000);
+        }
+
+        @Nullable
+        @Override
+        public LocalDateTime getDateTime() {
+            return TrackColumns.this.getDateTime(index);
+        }
+    }
+}
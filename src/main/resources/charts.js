@@ -0,0 +1,73 @@
+// Графики по прореженным рядам из Java: объект window.javaCharts задаёт Controller (controller.ChartBridge).
+// Для видимого интервала запрашивается не больше двух точек на пиксель, при масштабировании точки запрашиваются заново.
+var JAVA_CHARTS = [
+    {container: 'chartContainer1', series: 'hdop', title: 'HDOP'},
+    {container: 'chartContainer2', series: 'vdop', title: 'VDOP'},
+    {container: 'chartContainer3', series: 'pdop', title: 'PDOP'},
+    {
+        container: 'chartContainer4', series: 'lat', title: 'Latitude Delta (in degrees)',
+        metersSeries: 'lat_m', metersTitle: 'Latitude Delta (in meters)'
+    },
+    {
+        container: 'chartContainer5', series: 'lon', title: 'Longitude Delta (in degrees)',
+        metersSeries: 'lon_m', metersTitle: 'Longitude Delta (in meters)'
+    },
+    {container: 'chartContainer6', series: 'delta_sat', title: 'Satellite count'}
+];
+
+function showJavaCharts() {
+    if (typeof CanvasJS === 'undefined' || typeof javaCharts === 'undefined') {
+        return;
+    }
+    var degrees = document.querySelector('#degrees');
+    var inMeter = degrees !== null && degrees.checked;
+    for (var i = 0; i < JAVA_CHARTS.length; i++) {
+        var definition = JAVA_CHARTS[i];
+        var series = inMeter && definition.metersSeries ? definition.metersSeries : definition.series;
+        var title = inMeter && definition.metersTitle ? definition.metersTitle : definition.title;
+        if (document.getElementById(definition.container) !== null && javaCharts.has(series)) {
+            renderJavaChart(definition.container, series, title);
+        }
+    }
+}
+
+function renderJavaChart(container, series, title) {
+    var width = Math.max(100, document.getElementById(container).clientWidth || 1000);
+    var chart = new CanvasJS.Chart(container,
+        {
+            zoomEnabled: true,
+            title: {
+                text: title
+            },
+            rangeChanged: function (e) {
+                var axis = e.axisX[0];
+                var reset = e.trigger === 'reset';
+                chart.options.data[0].dataPoints = loadJavaPoints(series,
+                    reset ? NaN : axis.viewportMinimum, reset ? NaN : axis.viewportMaximum, width);
+                chart.render();
+            },
+            data: [
+                {
+                    type: "line",
+                    xValueType: "dateTime",
+                    dataPoints: loadJavaPoints(series, NaN, NaN, width)
+                }]
+        });
+    chart.render();
+}
+
+function loadJavaPoints(series, from, to, width) {
+    var points = JSON.parse(javaCharts.points(series, from, to, width));
+    var dataPoints = new Array(points.length);
+    for (var i = 0; i < points.length; i++) {
+        dataPoints[i] = {x: points[i][0], y: points[i][1]};
+    }
+    return dataPoints;
+}
+
+document.addEventListener('DOMContentLoaded', function () {
+    var degrees = document.querySelector('#degrees');
+    if (degrees !== null) {
+        degrees.addEventListener('change', showJavaCharts);
+    }
+});
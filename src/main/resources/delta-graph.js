@@ -97,6 +97,7 @@ function getDataPointsFromDeltaCSV(csv, index) {
         if (csvLines[i].length > 0) {
             points = csvLines[i].split(",");
             dataPoints.push({
+                x: parseFloat(points[2]),
                 y: parseFloat(points[index])
             });
         }
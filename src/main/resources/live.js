@@ -0,0 +1,66 @@
+// Обновление графиков при чтении NMEA в реальном времени, функции вызываются из Controller.pushLiveCharts
+var LIVE_MAX_POINTS = 3600;
+var liveDopChart = null;
+var livePositionChart = null;
+
+function appendLiveDop(points) {
+    if (typeof CanvasJS === 'undefined' || points.length === 0) {
+        return;
+    }
+    if (liveDopChart === null) {
+        liveDopChart = new CanvasJS.Chart("chartContainer1",
+            {
+                zoomEnabled: true,
+                title: {
+                    text: 'DOP (live)'
+                },
+                data: [
+                    {type: "line", xValueType: "dateTime", name: "HDOP", showInLegend: true, dataPoints: []},
+                    {type: "line", xValueType: "dateTime", name: "VDOP", showInLegend: true, dataPoints: []},
+                    {type: "line", xValueType: "dateTime", name: "PDOP", showInLegend: true, dataPoints: []}
+                ]
+            });
+    }
+    for (var i = 0; i < points.length; i++) {
+        for (var j = 0; j < 3; j++) {
+            liveDopChart.options.data[j].dataPoints.push({x: points[i][0], y: points[i][j + 1]});
+        }
+    }
+    for (var k = 0; k < 3; k++) {
+        var dataPoints = liveDopChart.options.data[k].dataPoints;
+        if (dataPoints.length > LIVE_MAX_POINTS) {
+            dataPoints.splice(0, dataPoints.length - LIVE_MAX_POINTS);
+        }
+    }
+    liveDopChart.render();
+}
+
+function appendLivePositions(points) {
+    if (typeof Chart === 'undefined' || points.length === 0) {
+        return;
+    }
+    if (livePositionChart === null) {
+        var canvas = document.getElementById('myChart');
+        var existing = typeof Chart.getChart === 'function' ? Chart.getChart(canvas) : null;
+        if (existing) {
+            existing.destroy();
+        }
+        livePositionChart = new Chart(canvas, {
+            type: 'scatter',
+            data: {
+                datasets: [{label: 'Position (live)', data: []}]
+            },
+            options: {
+                animation: false
+            }
+        });
+    }
+    var data = livePositionChart.data.datasets[0].data;
+    for (var i = 0; i < points.length; i++) {
+        data.push({x: points[i][1], y: points[i][0]});
+    }
+    if (data.length > LIVE_MAX_POINTS) {
+        data.splice(0, data.length - LIVE_MAX_POINTS);
+    }
+    livePositionChart.update('none');
+}
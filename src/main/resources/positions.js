@@ -0,0 +1,45 @@
+// Точки трека из Java: объект window.javaCharts задаёт Controller (controller.ChartBridge).
+// Для видимой области запрашивается не больше JAVA_POSITIONS_LIMIT точек, при масштабировании и сдвиге точки запрашиваются заново.
+var JAVA_POSITIONS_LIMIT = 5000;
+var javaPositionChart = null;
+
+function showJavaPositions() {
+    if (typeof Chart === 'undefined' || typeof javaCharts === 'undefined' || !javaCharts.hasPositions()) {
+        return;
+    }
+    var canvas = document.getElementById('myChart');
+    var existing = typeof Chart.getChart === 'function' ? Chart.getChart(canvas) : null;
+    if (existing) {
+        existing.destroy();
+    }
+    javaPositionChart = new Chart(canvas, {
+        type: 'scatter',
+        data: {
+            datasets: [{label: 'Position', data: loadJavaPositions(NaN, NaN, NaN, NaN)}]
+        },
+        options: {
+            animation: false,
+            plugins: {
+                zoom: {
+                    zoom: {wheel: {enabled: true}, pinch: {enabled: true}, mode: 'xy', onZoomComplete: reloadJavaPositions},
+                    pan: {enabled: true, mode: 'xy', onPanComplete: reloadJavaPositions}
+                }
+            }
+        }
+    });
+}
+
+function reloadJavaPositions(context) {
+    var chart = context.chart;
+    chart.data.datasets[0].data = loadJavaPositions(chart.scales.y.min, chart.scales.x.min, chart.scales.y.max, chart.scales.x.max);
+    chart.update('none');
+}
+
+function loadJavaPositions(minLatitude, minLongitude, maxLatitude, maxLongitude) {
+    var points = JSON.parse(javaCharts.positions(minLatitude, minLongitude, maxLatitude, maxLongitude, JAVA_POSITIONS_LIMIT));
+    var data = new Array(points.length);
+    for (var i = 0; i < points.length; i++) {
+        data[i] = {x: points[i][1], y: points[i][0]};
+    }
+    return data;
+}